@@ -0,0 +1,114 @@
+package stock;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Writers on separate shelves of one engine, to measure how inserts, updates
+ * and deletes scale with threads. Every thread owns a shelf and cycles
+ * products through insert, update and delete on it, so threads never wait
+ * for each other's shelf lock; what they still share is the name index, the
+ * name store, the history log, the product registry and the counters.
+ * <p>
+ * Scores are whole cycles per microsecond across all threads: compare the
+ * one-, two-, four- and eight-writer variants, on a machine with at least
+ * eight cores. Shelves are filled to 90% first, like in
+ * {@link StockEngineBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentWritesBenchmark {
+    private static final int MAX_THREADS = 8;
+    private static final int NAMES_PER_WRITER = 64;
+
+    @Param({"1000", "1000000"})
+    public int historyRetention;
+
+    private StockEngine engine;
+
+    @Setup(Level.Trial)
+    public void fillStock() {
+        int[] layout = new int[MAX_THREADS];
+        Arrays.fill(layout, StockEngineBenchmark.SLOTS_PER_SHELF);
+        engine = new StockEngine(layout, historyRetention);
+        int perShelf = StockEngineBenchmark.SLOTS_PER_SHELF * 9 / 10;
+        for (int shelf = 1; shelf <= MAX_THREADS; shelf++) {
+            for (int slot = 1; slot <= perShelf; slot++) {
+                engine.insert(shelf, slot, "Product " + shelf + "-" + slot, slot, slot * 100L);
+            }
+        }
+    }
+
+    /** One writer thread: its shelf, and the names it cycles through in that shelf's free slots. */
+    @State(Scope.Thread)
+    public static class Writer {
+        private int shelf;
+        private int firstFreeSlot;
+        private String[] names;
+        private String[] renamed;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void claimShelf(ThreadParams params) {
+            shelf = params.getThreadIndex() + 1;
+            firstFreeSlot = StockEngineBenchmark.SLOTS_PER_SHELF * 9 / 10 + 1;
+            names = new String[NAMES_PER_WRITER];
+            renamed = new String[NAMES_PER_WRITER];
+            for (int i = 0; i < NAMES_PER_WRITER; i++) {
+                names[i] = "Writer " + shelf + " product " + i;
+                renamed[i] = "Writer " + shelf + " renamed " + i;
+            }
+        }
+
+        void cycle(StockEngine engine) {
+            int i = next;
+            next = (i + 1) % NAMES_PER_WRITER;
+            engine.insert(shelf, firstFreeSlot + i, names[i], 10, 250);
+            engine.update(names[i], renamed[i], 3, 300);
+            engine.delete(renamed[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void oneWriter(Writer writer) {
+        writer.cycle(engine);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void twoWriters(Writer writer) {
+        writer.cycle(engine);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourWriters(Writer writer) {
+        writer.cycle(engine);
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public void eightWriters(Writer writer) {
+        writer.cycle(engine);
+    }
+}
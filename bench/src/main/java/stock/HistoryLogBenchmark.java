@@ -0,0 +1,57 @@
+package stock;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * History append and scan on a full ring whose retention matches the
+ * warehouse size, so appends overwrite the oldest entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryLogBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int slots;
+
+    private HistoryLog history;
+    private int productId;
+
+    @Setup(Level.Trial)
+    public void fillHistory() {
+        history = new HistoryLog(slots);
+        for (int i = 0; i < slots; i++) {
+            history.append(i, i, HistoryLog.Operation.INSERT);
+        }
+    }
+
+    @Benchmark
+    public int append() {
+        productId = productId + 1 < slots ? productId + 1 : 0;
+        history.append(productId, productId, HistoryLog.Operation.UPDATE);
+        return history.size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long scan() {
+        long[] sum = new long[1];
+        history.forEach((time, productId, operation) -> sum[0] += time + productId + operation.ordinal());
+        return sum[0];
+    }
+}
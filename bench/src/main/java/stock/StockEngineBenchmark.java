@@ -0,0 +1,152 @@
+package stock;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Hot paths of the stock engine at several warehouse sizes. Shelves hold
+ * {@value #SLOTS_PER_SHELF} slots each and are filled to 90%, so every shelf
+ * still has free slots and lookups see a realistic index size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockEngineBenchmark {
+    static final int SLOTS_PER_SHELF = 1000;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"1000", "100000", "1000000"})
+    public int slots;
+
+    private StockEngine engine;
+    private String[] storedNames;
+    private int shelves;
+    private int next;
+    private final StringBuilder rendered = new StringBuilder();
+    private final StringWriter listing = new StringWriter();
+    private final PrintWriter listingOut = new PrintWriter(listing);
+
+    @Setup(Level.Trial)
+    public void fillStock() {
+        shelves = slots / SLOTS_PER_SHELF;
+        int[] layout = new int[shelves];
+        Arrays.fill(layout, SLOTS_PER_SHELF);
+        engine = new StockEngine(layout, slots);
+        int perShelf = SLOTS_PER_SHELF * 9 / 10;
+        storedNames = new String[shelves * perShelf];
+        for (int shelf = 1; shelf <= shelves; shelf++) {
+            for (int slot = 1; slot <= perShelf; slot++) {
+                String name = "Product " + shelf + "-" + slot;
+                engine.insert(shelf, slot, name, slot, slot * 100L);
+                storedNames[(shelf - 1) * perShelf + slot - 1] = name;
+            }
+        }
+        engine.findByPrefix("", 1); // build the search indexes outside the measurement
+    }
+
+    private String nextStoredName() {
+        next = next + 7919 < storedNames.length ? next + 7919 : (next + 7919) % storedNames.length;
+        return storedNames[next];
+    }
+
+    /** Case-insensitive lookup of a stocked product, including its shelf and slot location. */
+    @Benchmark
+    public StockItem findProduct() {
+        return engine.find(nextStoredName().toUpperCase());
+    }
+
+    @Benchmark
+    public StockItem findMissingProduct() {
+        return engine.find("No such product");
+    }
+
+    /** Duplicate-name check for a name that is free. */
+    @Benchmark
+    public void checkNewName() {
+        engine.checkNewName("Fresh product");
+    }
+
+    /** Duplicate-name check that rejects a stocked name, including building the error. */
+    @Benchmark
+    public Object rejectDuplicateName() {
+        try {
+            engine.checkNewName(nextStoredName());
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    /** Prefix search matching 111 products of one shelf: slots 1, 10-19 and 100-199. */
+    @Benchmark
+    public List<StockItem> findByPrefix() {
+        return engine.findByPrefix("product " + (shelves / 2 + 1) + "-1", 1000);
+    }
+
+    /** Quantity range search returning one product per shelf, capped at 1000. */
+    @Benchmark
+    public List<StockItem> findByQuantity() {
+        return engine.findByQuantity(7, 7, 1000);
+    }
+
+    /** The shelves listed by "Stock available". */
+    @Benchmark
+    public int[] listAvailable() {
+        return engine.listAvailable();
+    }
+
+    /** The middle page of the paged view over every shelf, as the browse option and the view command render it. */
+    @Benchmark
+    public int renderPage() {
+        long middlePage = (long) shelves * SLOTS_PER_SHELF / PAGE_SIZE / 2 + 1;
+        StockView.renderPage(engine, rendered, 0, shelves - 1, StockEngine.SlotFilter.ALL, PAGE_SIZE, middlePage);
+        return rendered.length();
+    }
+
+    /** The full "View Stock" listing. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int renderAllStock() {
+        listing.getBuffer().setLength(0);
+        StockView.printAll(engine, listingOut);
+        listingOut.flush();
+        return listing.getBuffer().length();
+    }
+
+    /** Insert and delete on a free slot; each appends one history entry. */
+    @Benchmark
+    public StockItem insertAndDelete() {
+        engine.insert(shelves, SLOTS_PER_SHELF, "Benchmark product", 1, 100);
+        return engine.delete("Benchmark product");
+    }
+
+    /** Reads the whole history, which holds one entry per slot. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void viewHistory(Blackhole blackhole) {
+        engine.readHistory((time, productName, operation) -> {
+            blackhole.consume(time);
+            blackhole.consume(productName);
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package stock;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cross-warehouse queries as the number of warehouses grows. Every
+ * warehouse holds {@value #PRODUCTS_PER_WAREHOUSE} products, and each
+ * product name is stocked in one warehouse out of eight.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WarehousesBenchmark {
+    static final int PRODUCTS_PER_WAREHOUSE = 10_000;
+
+    @Param({"1", "16", "256"})
+    public int warehouseCount;
+
+    private Warehouses warehouses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fillWarehouses() {
+        warehouses = new Warehouses();
+        int[] layout = new int[PRODUCTS_PER_WAREHOUSE / StockEngineBenchmark.SLOTS_PER_SHELF];
+        Arrays.fill(layout, StockEngineBenchmark.SLOTS_PER_SHELF);
+        for (int w = 0; w < warehouseCount; w++) {
+            StockEngine engine = new StockEngine(layout, PRODUCTS_PER_WAREHOUSE);
+            for (int i = 0; i < PRODUCTS_PER_WAREHOUSE; i++) {
+                engine.insert(i / StockEngineBenchmark.SLOTS_PER_SHELF + 1, i % StockEngineBenchmark.SLOTS_PER_SHELF + 1,
+                        "Product " + (w % 8) + "-" + i, i, i * 100L);
+            }
+            warehouses.put("site-" + w, engine);
+        }
+    }
+
+    @Benchmark
+    public List<Warehouses.Located> locateProduct() {
+        next = next + 7919 < PRODUCTS_PER_WAREHOUSE ? next + 7919 : (next + 7919) % PRODUCTS_PER_WAREHOUSE;
+        return warehouses.locate("PRODUCT 3-" + next);
+    }
+
+    @Benchmark
+    public Map<String, Warehouses.Totals> totalsByWarehouse() {
+        return warehouses.totalsByWarehouse();
+    }
+}
@@ -1,168 +1,389 @@
-import java.text.SimpleDateFormat;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Date;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import stock.Csv;
+import stock.OperationStats;
+import stock.OperationStats.Operation;
+import stock.OperationSummary;
+import stock.StockEngine;
+import stock.StockEngine.SlotFilter;
+import stock.StockItem;
+import stock.StockSnapshot;
+import stock.StockView;
+import stock.Warehouses;
+import stock.Warehouses.Located;
+import stock.Warehouses.Totals;
+import stock.WriteAheadLog;
 
 public class ConsoleStockManagementSystem {
-    private static String[][] stock;
-    private static int maxShelves;
-    private static int[] slotsPerShelf;
-    private static int[] shelfStartIndex;
-    private static int totalSlots;
-    private static int currentProductCount;
-    private static ArrayList<String> insertionHistory;
+    private static final DateTimeFormatter HISTORY_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("EEEE, MMMM, d, yyyy, HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final int HISTORY_RETENTION = Integer.getInteger("stock.history.retention", Integer.MAX_VALUE);
+    private static final String SNAPSHOT_FILE = "stock.snapshot";
+    private static final String LOG_FILE = "stock.wal";
+    private static final String NO_SNAPSHOT = "Write-ahead log has changes but no stock snapshot.";
+    private static final long CHECKPOINT_LOG_BYTES = Long.getLong("stock.wal.checkpointBytes", 64L << 20);
+    private static final int IMPORT_BATCH_SIZE = 4096;
+    private static final int IMPORT_ERRORS_SHOWN = 100;
+    private static final int SEARCH_RESULTS_SHOWN = 1000;
+    private static final int LOW_STOCK_THRESHOLD = Integer.getInteger("stock.lowStock.threshold", 5);
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 100_000;
+    private static final int DEFAULT_PORT = 7070;
+    private static final long MAX_SERVER_SLOTS = Long.getLong("stock.server.maxSlots", 1L << 22); // per warehouse, for layouts sent by clients
+
+    private static final String DEFAULT_WAREHOUSE = "main";
+    private static final String WAREHOUSES_DIRECTORY = "warehouses"; // under the data directory, one subdirectory per other warehouse
+
+    private static final Warehouses warehouses = new Warehouses(); // every warehouse set up, imported or restored
+    private static final ThreadLocal<String> currentWarehouse = ThreadLocal.withInitial(() -> DEFAULT_WAREHOUSE); // per server connection
     private static Scanner scanner;
-    private static boolean stockInitialized;
+    private static PrintWriter console; // buffered System.out for bulk output, flushed after each view
+    private static Path dataDirectory; // set when -Dstock.data.dir enables persistence
+    private static final ConcurrentSkipListMap<String, WriteAheadLog> writeAheadLogs = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER); // per warehouse
+    private static final ReentrantReadWriteLock stockReplaceLock = new ReentrantReadWriteLock(); // server: setup and import run alone
+    private static final Set<Socket> serverClients = ConcurrentHashMap.newKeySet();
+    private static volatile ServerSocket serverSocket;
+    private static boolean serverMode; // commands come from the network: layouts are capped and imports stay in the data directory
+    private static final OperationStats operationStats = new OperationStats(); // shared by every engine the program sets up
+    private static final ThreadLocal<PrintWriter> alertOutput = ThreadLocal.withInitial(() -> console); // where low-stock alerts are printed
 
     public static void main(String[] args) {
+        boolean batchFailed = false;
         try {
+            String mode = args.length > 0 ? args[0] : "";
+            if (!mode.isEmpty() && !mode.equals("--batch") && !mode.equals("--server") && !mode.equals("--load-test")) {
+                System.out.println("Usage: java ConsoleStockManagementSystem [--batch [file|-] | --server [port] | --load-test [port] [clients] [requests]]");
+                return;
+            }
+            if (mode.equals("--load-test")) {
+                runLoadTest(args.length > 1 ? parsePort(args[1]) : DEFAULT_PORT, args.length > 2 ? parseIntField(args[2], "clients") : 64,
+                        args.length > 3 ? parseIntField(args[3], "requests") : 10_000);
+                return;
+            }
+            registerOperationStats();
             scanner = new Scanner(System.in);
-            insertionHistory = new ArrayList<>();
-            stockInitialized = false;
-            showMenu();
+            console = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+            String dataDir = System.getProperty("stock.data.dir");
+            if (dataDir != null) {
+                openDataDirectory(Path.of(dataDir));
+            }
+            if (mode.equals("--batch")) {
+                batchFailed = runBatch(args.length > 1 ? args[1] : "-") > 0;
+            } else if (mode.equals("--server")) {
+                serverMode = true;
+                runServer(args.length > 1 ? parsePort(args[1]) : DEFAULT_PORT);
+            } else {
+                showMenu();
+            }
         } catch (Exception e) {
             System.out.println("Unexpected error: " + e.getMessage());
         } finally {
+            closeDataDirectory();
             if (scanner != null) {
                 scanner.close();
             }
         }
+        if (batchFailed) {
+            System.exit(1);
+        }
     }
 
     // Helper method to show available stock
     private static void showAvailableStock() {
-        if (!stockInitialized || maxShelves == 0) {
+        int[] available = engine() != null ? engine().listAvailable() : new int[0];
+        if (available.length == 0) {
             System.out.println("Stock available : None");
             return;
         }
 
-        // Collect non-full shelves
-        ArrayList<Integer> nonFullShelves = new ArrayList<>();
-        for (int i = 0; i < maxShelves; i++) {
-            boolean isFull = true;
-            for (int j = 0; j < slotsPerShelf[i]; j++) {
-                int slotIndex = shelfStartIndex[i] + j;
-                if (stock[slotIndex] == null || stock[slotIndex][0] == null) {
-                    isFull = false;
-                    break;
-                }
+        // Display non-full shelves
+        StringBuilder nonFullShelves = new StringBuilder();
+        for (int shelf : available) {
+            if (nonFullShelves.length() > 0) {
+                nonFullShelves.append('|');
             }
-            if (!isFull) {
-                nonFullShelves.add(i + 1);
+            nonFullShelves.append(shelf);
+        }
+        System.out.println("Stock available : " + nonFullShelves);
+    }
+
+    // Helper method to format a price in minor units as currency units
+    private static String formatPrice(long priceMinor) {
+        return BigDecimal.valueOf(priceMinor, 2).toPlainString();
+    }
+
+    // Helper method to check a price entered in currency units and convert it to minor units
+    private static long checkPrice(double price) {
+        return StockEngine.toMinorUnits(price);
+    }
+
+    // Helper method to return the current warehouse's stock, or null until it is set up, imported or restored
+    private static StockEngine engine() {
+        return warehouses.get(currentWarehouse.get());
+    }
+
+    // Helper method to replace the current warehouse's stock with an empty one for a shelf layout
+    private static void allocateStock(int[] layout) {
+        String warehouse = currentWarehouse.get();
+        if (dataDirectory != null && !writeAheadLogs.containsKey(warehouse)) {
+            openWarehouse(warehouse, warehouseDirectory(warehouse)); // first setup of a new warehouse
+        }
+        StockEngine stock = new StockEngine(layout, HISTORY_RETENTION);
+        stock.attachLog(writeAheadLogs.get(warehouse));
+        stock.attachStats(operationStats);
+        watchLowStock(stock);
+        warehouses.put(warehouse, stock);
+    }
+
+    // Helper method to replace the stock with an empty one and persist the new layout
+    private static void setUpStock(int[] layout) {
+        long start = System.nanoTime();
+        allocateStock(layout);
+        checkpoint();
+        operationStats.record(Operation.SETUP, System.nanoTime() - start);
+    }
+
+    // Helper method to apply the low-stock threshold and print an alert whenever an update goes below it
+    private static void watchLowStock(StockEngine stock) {
+        stock.setLowStockThreshold(LOW_STOCK_THRESHOLD);
+        stock.addLowStockListener((item, previousQuantity, threshold) -> alertOutput.get().println("Alert: Product [" + item.name()
+                + "] is low on stock in shelf [" + item.shelf() + "], slot [" + item.slot() + "]: quantity [" + item.quantity()
+                + "] is below [" + threshold + "]."));
+    }
+
+    // Helper method to restore every warehouse saved in a data directory: the default one from the
+    // directory itself, each other one from its own subdirectory of the warehouses directory
+    private static void openDataDirectory(Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            System.out.println("Error: Could not open data directory " + directory + ": " + e.getMessage() + " Changes will not be saved.");
+            return;
+        }
+        if (!openWarehouse(DEFAULT_WAREHOUSE, directory)) {
+            return;
+        }
+        dataDirectory = directory;
+        Path others = directory.resolve(WAREHOUSES_DIRECTORY);
+        if (!Files.isDirectory(others)) {
+            return;
+        }
+        try (Stream<Path> subdirectories = Files.list(others)) {
+            for (Path subdirectory : subdirectories.filter(Files::isDirectory).sorted().toList()) {
+                String warehouse = subdirectory.getFileName().toString();
+                try {
+                    Warehouses.checkName(warehouse);
+                } catch (IllegalArgumentException e) {
+                    continue; // not a warehouse
+                }
+                if (!warehouse.equalsIgnoreCase(DEFAULT_WAREHOUSE)) {
+                    openWarehouse(warehouse, subdirectory);
+                }
             }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error: Could not list warehouses in " + others + ": " + e.getMessage());
         }
+    }
 
-        // Display non-full shelves
-        if (nonFullShelves.isEmpty()) {
-            System.out.println("Stock available : None");
-        } else {
-            System.out.print("Stock available : ");
-            for (int i = 0; i < nonFullShelves.size(); i++) {
-                System.out.print(nonFullShelves.get(i));
-                if (i < nonFullShelves.size() - 1) {
-                    System.out.print("|");
+    // Helper method to restore one warehouse from the snapshot and write-ahead log in its directory; false on failure
+    private static boolean openWarehouse(String warehouse, Path directory) {
+        long start = System.nanoTime();
+        StockEngine stock = null;
+        try {
+            Files.createDirectories(directory);
+            long lastSequence = 0;
+            Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+            if (Files.exists(snapshotFile)) {
+                StockSnapshot snapshot = StockSnapshot.readFrom(snapshotFile, HISTORY_RETENTION);
+                stock = StockEngine.restore(snapshot);
+                stock.attachStats(operationStats);
+                watchLowStock(stock);
+                lastSequence = snapshot.lastSequence();
+            }
+            WriteAheadLog.Handler replay = stock != null ? stock.replayHandler() : new WriteAheadLog.Handler() {
+                @Override
+                public void insert(int shelfIndex, int offset, int productId, String name, int quantity, long price, long time) {
+                    throw new IllegalStateException(NO_SNAPSHOT);
+                }
+
+                @Override
+                public void update(int shelfIndex, int offset, String name, int quantity, long price, long time) {
+                    throw new IllegalStateException(NO_SNAPSHOT);
+                }
+
+                @Override
+                public void delete(int shelfIndex, int offset, long time) {
+                    throw new IllegalStateException(NO_SNAPSHOT);
                 }
+
+                @Override
+                public void resize(int shelfIndex, int slots) {
+                    throw new IllegalStateException(NO_SNAPSHOT);
+                }
+            };
+            WriteAheadLog log = WriteAheadLog.open(directory.resolve(LOG_FILE), lastSequence, replay);
+            writeAheadLogs.put(warehouse, log);
+            if (stock != null) {
+                stock.attachLog(log);
+                warehouses.put(warehouse, stock);
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                System.out.println("Restored " + stock.productCount() + " products on " + stock.shelfCount() + " stocks from " + directory + " in " + elapsedMillis + " ms.");
             }
-            System.out.println();
+            return true;
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            System.out.println("Error: Could not open data directory " + directory + ": " + e.getMessage() + " Changes will not be saved.");
+            return false;
         }
     }
 
-    // Helper method to format current date and time
-    private static String formatInsertionTime(Date date) {
-        SimpleDateFormat formatter = new SimpleDateFormat("EEEE, MMMM, d, yyyy, HH:mm:ss");
-        return formatter.format(date);
+    // Helper method to locate a warehouse's files; the default warehouse keeps the layout of a single-warehouse data directory
+    private static Path warehouseDirectory(String warehouse) {
+        return warehouse.equalsIgnoreCase(DEFAULT_WAREHOUSE) ? dataDirectory : dataDirectory.resolve(WAREHOUSES_DIRECTORY).resolve(warehouse);
+    }
+
+    // Helper method to make the current warehouse's logged changes durable, checkpointing once the log grows large
+    private static void commitLog() {
+        WriteAheadLog log = writeAheadLogs.get(currentWarehouse.get());
+        if (log == null) {
+            return;
+        }
+        try {
+            log.commit();
+            if (log.size() > CHECKPOINT_LOG_BYTES) {
+                checkpoint(currentWarehouse.get());
+            }
+        } catch (UncheckedIOException e) {
+            throw new UncheckedIOException("Could not save changes: " + e.getMessage(), e.getCause());
+        }
+    }
+
+    // Helper method to write a snapshot of the current warehouse's stock and start a fresh log
+    private static void checkpoint() {
+        checkpoint(currentWarehouse.get());
+    }
+
+    private static void checkpoint(String warehouse) {
+        StockEngine stock = warehouses.get(warehouse);
+        if (!writeAheadLogs.containsKey(warehouse) || stock == null) {
+            return;
+        }
+        try {
+            stock.checkpoint(warehouseDirectory(warehouse).resolve(SNAPSHOT_FILE));
+        } catch (UncheckedIOException | IllegalStateException e) {
+            System.out.println("Error: Could not write stock snapshot: " + e.getMessage());
+        }
+    }
+
+    // Helper method to checkpoint every warehouse and release the data directory on exit
+    private static synchronized void closeDataDirectory() {
+        for (String warehouse : writeAheadLogs.keySet()) {
+            checkpoint(warehouse);
+            try {
+                writeAheadLogs.remove(warehouse).close();
+            } catch (UncheckedIOException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
     }
 
     //========== 1. Set Up Stock with Catalogue ==============
     private static void initializeStock() {
         try {
             System.out.print("[+] Enter the number of stocks: ");
-            maxShelves = scanner.nextInt();
+            int shelves = scanner.nextInt();
             scanner.nextLine(); // Clear buffer
-            if (maxShelves <= 0) {
+            if (shelves <= 0) {
                 throw new IllegalArgumentException("Number of stocks must be positive.");
             }
-            slotsPerShelf = new int[maxShelves];
-            shelfStartIndex = new int[maxShelves];
-            totalSlots = 0;
-            insertionHistory.clear();
-            stockInitialized = true;
+            int[] layout = new int[shelves];
 
             // Prompt for number of catalogues per stock
             System.out.println("[+] Insert the number of catalogue for each stock:");
-            for (int i = 0; i < maxShelves; i++) {
+            for (int i = 0; i < shelves; i++) {
                 System.out.print("[+] Insert number of catalogue on stock [" + (i + 1) + "]: ");
                 int slots = scanner.nextInt();
                 scanner.nextLine(); // Clear buffer
                 if (slots <= 0) {
                     throw new IllegalArgumentException("Number of catalogues must be positive.");
                 }
-                slotsPerShelf[i] = slots;
-                shelfStartIndex[i] = totalSlots; // Start index for this shelf
-                totalSlots += slots;
+                layout[i] = slots;
             }
 
-            // Initialize stock array
-            stock = new String[totalSlots][3];
-            currentProductCount = 0;
+            // Initialize stock columns and occupancy bitmaps, and persist the new empty layout
+            setUpStock(layout);
 
             // Prompt to fill slots
-            System.out.println("[+] Enter products for up to " + totalSlots + " slots across " + maxShelves + " stocks. Enter shelf 0 to finish.");
-            while (currentProductCount < totalSlots) {
+            System.out.println("[+] Enter products for up to " + engine().totalSlots() + " slots across " + engine().shelfCount() + " stocks. Enter shelf 0 to finish.");
+            while (!engine().isFull()) {
                 try {
                     showAvailableStock();
-                    System.out.print("[+] Enter shelf number (1-" + maxShelves + ", 0 to finish): ");
+                    System.out.print("[+] Enter shelf number (1-" + engine().shelfCount() + ", 0 to finish): ");
                     int shelf = scanner.nextInt();
                     scanner.nextLine(); // Clear buffer
                     if (shelf == 0) {
                         break; // Exit if user chooses to finish
                     }
-                    if (shelf < 1 || shelf > maxShelves) {
-                        throw new IllegalArgumentException("Invalid shelf number. Choose between 1 and " + maxShelves + ".");
-                    }
-                    int shelfIndex = shelf - 1;
-                    System.out.print("[+] Enter slot number (1-" + slotsPerShelf[shelfIndex] + "): ");
+                    int shelfIndex = engine().checkShelf(shelf);
+                    System.out.print("[+] Enter slot number (1-" + engine().slotsOnShelf(shelfIndex) + "): ");
                     int slot = scanner.nextInt();
                     scanner.nextLine(); // Clear buffer
-                    if (slot < 1 || slot > slotsPerShelf[shelfIndex]) {
-                        throw new IllegalArgumentException("Invalid slot number. Choose between 1 and " + slotsPerShelf[shelfIndex] + ".");
-                    }
-                    int slotIndex = shelfStartIndex[shelfIndex] + slot - 1;
                     // Check if slot is occupied
-                    if (stock[slotIndex] != null && stock[slotIndex][0] != null) {
-                        throw new IllegalArgumentException("Slot [" + slot + "] on shelf [" + shelf + "] is occupied by [" + stock[slotIndex][0] + "].");
-                    }
+                    engine().checkSlotFree(shelf, slot);
                     System.out.print("[+] Enter product name for shelf [" + shelf + "], slot [" + slot + "]: ");
                     String name = scanner.nextLine().trim();
-                    if (name.isEmpty()) {
-                        throw new IllegalArgumentException("Product name cannot be empty.");
-                    }
-                    // Check for duplicate product name
-                    for (int i = 0; i < totalSlots; i++) {
-                        if (stock[i] != null && stock[i][0] != null && stock[i][0].equalsIgnoreCase(name)) {
-                            int[] location = getShelfAndSlot(i);
-                            throw new IllegalArgumentException("Product [" + name + "] already exists in shelf " + location[0] + ", slot " + location[1] + ".");
-                        }
-                    }
+                    // Check for empty or duplicate product name
+                    engine().checkNewName(name);
                     System.out.print("[+] Enter quantity of product: ");
                     int quantity = scanner.nextInt();
-                    if (quantity < 0) {
-                        throw new IllegalArgumentException("Quantity cannot be negative.");
-                    }
+                    StockEngine.checkQuantity(quantity);
                     System.out.print("[+] Enter price of product: ");
-                    double price = scanner.nextDouble();
-                    if (price < 0) {
-                        throw new IllegalArgumentException("Price cannot be negative.");
-                    }
+                    long priceMinor = checkPrice(scanner.nextDouble());
                     scanner.nextLine(); // Clear buffer
 
-                    stock[slotIndex] = new String[]{name, String.valueOf(quantity), String.valueOf(price)};
-                    currentProductCount++;
-                    // Log insertion with date, time, and product name
-                    String timeString = formatInsertionTime(Date.from(Instant.now()));
-                    insertionHistory.add(timeString + "," + name);
+                    engine().insert(shelf, slot, name, quantity, priceMinor);
+                    commitLog();
                     System.out.println("Product [" + name + "] added to shelf [" + shelf + "], slot [" + slot + "].");
                 } catch (InputMismatchException e) {
                     System.out.println("[+] Please enter valid numeric values.");
@@ -176,95 +397,68 @@ public class ConsoleStockManagementSystem {
         } catch (InputMismatchException e) {
             System.out.println("Please enter valid numeric values for stock or catalogue counts.");
             scanner.nextLine(); // Clear invalid input
-            stockInitialized = false;
         } catch (IllegalArgumentException e) {
             System.out.println("Error: " + e.getMessage());
-            stockInitialized = false;
         }
     }
 
     //==========  2. View Product in Stock ==========
     private static void viewProducts() {
-        if (!stockInitialized) {
+        if (engine() == null) {
             System.out.println("Stock is not initialized. Please set up the stock first.");
             return;
         }
         try {
-            System.out.println("-------- View Stock --------");
-            for (int i = 0; i < maxShelves; i++) {
-                System.out.print("Stock [" + (i + 1) + "] => ");
-                for (int j = 0; j < slotsPerShelf[i]; j++) {
-                    int slotIndex = shelfStartIndex[i] + j;
-                    if (stock[slotIndex] != null && stock[slotIndex][0] != null) {
-                        System.out.print("[ " + stock[slotIndex][0] + " ] ");
-                    } else {
-                        System.out.print("[ " + (j + 1) + " - EMPTY ] ");
-                    }
-                }
-                System.out.println();
-            }
+            printProducts(console);
         } catch (Exception e) {
             System.out.println("Error displaying products: " + e.getMessage());
+        } finally {
+            console.flush();
         }
     }
 
+    private static void printProducts(PrintWriter out) {
+        long start = System.nanoTime();
+        out.println("-------- View Stock --------");
+        StockView.printAll(engine(), out);
+        operationStats.record(Operation.VIEW, System.nanoTime() - start);
+    }
+
     //==========  3. Insert Product to Stock Catalogue ==========
     private static void insertProduct() {
-        if (!stockInitialized) {
+        if (engine() == null) {
             System.out.println("Stock is not initialized. Please set up the stock first.");
             return;
         }
-        if (currentProductCount >= totalSlots) {
+        if (engine().isFull()) {
             System.out.println("Stock is full. Cannot add more products.");
             return;
         }
         try {
             showAvailableStock();
-            System.out.print("[+] Enter shelf number to insert product (1-" + maxShelves + "): ");
+            System.out.print("[+] Enter shelf number to insert product (1-" + engine().shelfCount() + "): ");
             int shelf = scanner.nextInt();
             scanner.nextLine(); // Clear buffer
-            if (shelf < 1 || shelf > maxShelves) {
-                throw new IllegalArgumentException("Invalid shelf number. Choose between 1 and " + maxShelves + ".");
-            }
-            int shelfIndex = shelf - 1;
-            System.out.print("[+] Enter slot number (1-" + slotsPerShelf[shelfIndex] + ") to insert product: ");
+            int shelfIndex = engine().checkShelf(shelf);
+            System.out.print("[+] Enter slot number (1-" + engine().slotsOnShelf(shelfIndex) + ") to insert product: ");
             int slot = scanner.nextInt();
             scanner.nextLine(); // Clear buffer
-            if (slot < 1 || slot > slotsPerShelf[shelfIndex]) {
-                throw new IllegalArgumentException("Invalid slot number. Choose between 1 and " + slotsPerShelf[shelfIndex] + ".");
-            }
-            int slotIndex = shelfStartIndex[shelfIndex] + slot - 1;
-            if (stock[slotIndex] != null && stock[slotIndex][0] != null) {
-                throw new IllegalArgumentException("Slot [" + slot + "] on shelf [" + shelf + "] is occupied by [" + stock[slotIndex][0] + "]. Use update to modify.");
+            String occupant = engine().occupant(shelf, slot);
+            if (occupant != null) {
+                throw new IllegalArgumentException("Slot [" + slot + "] on shelf [" + shelf + "] is occupied by [" + occupant + "]. Use update to modify." + describeFirstFreeSlot(shelfIndex));
             }
             System.out.print("[+] Enter product name: ");
             String name = scanner.nextLine().trim();
-            if (name.isEmpty()) {
-                throw new IllegalArgumentException("Product name cannot be empty.");
-            }
-            for (int i = 0; i < totalSlots; i++) {
-                if (stock[i] != null && stock[i][0] != null && stock[i][0].equalsIgnoreCase(name)) {
-                    int[] location = getShelfAndSlot(i);
-                    throw new IllegalArgumentException("Product [" + name + "] already exists in shelf [" + location[0] + "], slot [" + location[1] + "].");
-                }
-            }
+            engine().checkNewName(name);
             System.out.print("[+] Enter quantity of product: ");
             int quantity = scanner.nextInt();
-            if (quantity < 0) {
-                throw new IllegalArgumentException("Quantity cannot be negative.");
-            }
+            StockEngine.checkQuantity(quantity);
             System.out.print("[+] Enter price of product: ");
-            double price = scanner.nextDouble();
-            if (price < 0) {
-                throw new IllegalArgumentException("Price cannot be negative.");
-            }
+            long priceMinor = checkPrice(scanner.nextDouble());
             scanner.nextLine(); // Clear buffer
 
-            stock[slotIndex] = new String[]{name, String.valueOf(quantity), String.valueOf(price)};
-            currentProductCount++;
-            // Log insertion with date, time, and product name
-            String timeString = formatInsertionTime(Date.from(Instant.now()));
-            insertionHistory.add(timeString + "," + name);
+            engine().insert(shelf, slot, name, quantity, priceMinor);
+            commitLog();
             System.out.println("Product [" + name + "] added to shelf " + shelf + ", slot [" + slot + "].");
         } catch (InputMismatchException e) {
             System.out.println("Error: Please enter valid numeric values.");
@@ -276,7 +470,7 @@ public class ConsoleStockManagementSystem {
 
     // ========== 4. Update Product in Stock Catalogue by Product Name ==========
     private static void updateProduct() {
-        if (!stockInitialized) {
+        if (engine() == null) {
             System.out.println("Error: Stock is not initialized. Please set up the stock first.");
             return;
         }
@@ -286,43 +480,31 @@ public class ConsoleStockManagementSystem {
             if (name.isEmpty()) {
                 throw new IllegalArgumentException("Product name cannot be empty.");
             }
-            int index = findProductIndex(name);
-            if (index == -1) {
+            if (engine().find(name) == null) {
                 System.out.println("Product not found.");
                 return;
             }
 
             System.out.print("[+] Enter new product name: ");
             String newName = scanner.nextLine().trim();
-            if (newName.isEmpty()) {
-                throw new IllegalArgumentException("New product name cannot be empty.");
-            }
+            engine().checkRename(name, newName);
 
             System.out.print("[+] Enter new quantity of product: ");
             int quantity = scanner.nextInt();
-            if (quantity < 0) {
-                throw new IllegalArgumentException("Quantity cannot be negative.");
-            }
+            StockEngine.checkQuantity(quantity);
             System.out.print("[+] Enter new price of product: ");
-            double price = scanner.nextDouble();
-            if (price < 0) {
-                throw new IllegalArgumentException("Price cannot be negative.");
-            }
+            long priceMinor = checkPrice(scanner.nextDouble());
             scanner.nextLine(); // Clear buffer
 
             // Update stock
-            stock[index][0] = newName;
-            stock[index][1] = String.valueOf(quantity);
-            stock[index][2] = String.valueOf(price);
-
-            // Update insertion history to reflect the new name
-            for (int i = 0; i < insertionHistory.size(); i++) {
-                if (insertionHistory.get(i).contains(name)) { // Match the old name in history
-                    insertionHistory.set(i, insertionHistory.get(i).replace(name, newName)); // Replace old name with new name
-                }
+            if (engine().update(name, newName, quantity, priceMinor) == null) {
+                System.out.println("Product not found.");
+                return;
             }
+            commitLog();
 
             System.out.println("Product updated successfully.");
+            console.flush(); // low-stock alert, if any
         } catch (InputMismatchException e) {
             System.out.println("Error: Please enter valid numeric values for quantity and price.");
             scanner.nextLine(); // Clear invalid input
@@ -333,7 +515,7 @@ public class ConsoleStockManagementSystem {
 
     // ========== 5. Delete Product in Stock Catalogue by Name ==========
     private static void deleteProduct() {
-        if (!stockInitialized) {
+        if (engine() == null) {
             System.out.println("Error: Stock is not initialized. Please set up the stock first.");
             return;
         }
@@ -343,13 +525,11 @@ public class ConsoleStockManagementSystem {
             if (name.isEmpty()) {
                 throw new IllegalArgumentException("Product name cannot be empty.");
             }
-            int index = findProductIndex(name);
-            if (index == -1) {
+            if (engine().delete(name) == null) {
                 System.out.println("---------- Product not found. ----------");
                 return;
             }
-            stock[index] = null;
-            currentProductCount--;
+            commitLog();
             System.out.println("---------- Product deleted successfully. ----------");
         } catch (IllegalArgumentException e) {
             System.out.println("Error: " + e.getMessage());
@@ -358,67 +538,1041 @@ public class ConsoleStockManagementSystem {
 
     // ========== 6. View Insertion History in Stock Catalogue ==========
     private static void viewInsertionHistory() {
-        if (!stockInitialized) {
+        if (engine() == null) {
             System.out.println("Error: Stock is not initialized. Please set up the stock first.");
             return;
         }
         try {
-            if (insertionHistory.isEmpty()) {
-                System.out.println("No insertion history available.");
-                return;
-            }
-            System.out.println("\nInsertion History:");
-            for (String entry : insertionHistory) {
-                String[] parts = entry.split(",");
-                String dateTime = parts[0] + "," + parts[1] + "," + parts[2] + "," + parts[3] + "," + parts[4];
-                String productName = parts[5];
-                System.out.println("Inserted at [" + dateTime + "], Product: [" + productName + "]");
-            }
+            printHistory(console);
         } catch (Exception e) {
             System.out.println("Error displaying insertion history: " + e.getMessage());
+        } finally {
+            console.flush();
         }
     }
 
-    // Helper method to find product index by name
-    private static int findProductIndex(String name) {
+    private static void printHistory(PrintWriter out) {
+        long start = System.nanoTime();
+        if (!engine().hasHistory()) {
+            out.println("No insertion history available.");
+        } else {
+            out.println("\nInsertion History:");
+            engine().readHistory((time, productName, operation) -> {
+                String dateTime = HISTORY_TIME_FORMAT.format(Instant.ofEpochMilli(time));
+                out.println(operation.label() + " at [" + dateTime + "], Product: [" + productName + "]");
+            });
+        }
+        operationStats.record(Operation.HISTORY, System.nanoTime() - start);
+    }
+
+    // ========== 7. Import Stock from CSV ==========
+    private static void importStock() {
         try {
-            for (int i = 0; i < totalSlots; i++) {
-                if (stock[i] != null && stock[i][0] != null && stock[i][0].equalsIgnoreCase(name)) {
-                    return i;
+            System.out.print("[+] Enter the number of catalogue for each stock, separated by commas (e.g. 5,5,10): ");
+            int[] layout = parseLayout(scanner.nextLine());
+            System.out.print("[+] Enter path of CSV file with rows shelf,slot,name,quantity,price: ");
+            Path csvFile = Path.of(scanner.nextLine().trim());
+            if (!Files.isReadable(csvFile)) {
+                throw new IllegalArgumentException("Cannot read file [" + csvFile + "].");
+            }
+            try {
+                importStockFromCsv(layout, csvFile, console);
+            } finally {
+                console.flush();
+            }
+            showAvailableStock();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error reading CSV file: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    // Helper method to parse a comma-separated list of catalogue counts
+    private static int[] parseLayout(String text) {
+        String[] parts = text.split(",");
+        int[] layout = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                layout[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number of catalogues [" + parts[i].trim() + "] for stock [" + (i + 1) + "].");
+            }
+            if (layout[i] <= 0) {
+                throw new IllegalArgumentException("Number of catalogues must be positive.");
+            }
+        }
+        return layout;
+    }
+
+    // Helper method to replace the stock with a new layout and the products in a CSV file.
+    // Rows are streamed in fixed-size batches and each batch is committed to the log once.
+    private static void importStockFromCsv(int[] layout, Path csvFile, PrintWriter out) throws IOException {
+        long start = System.nanoTime();
+        allocateStock(layout);
+        checkpoint();
+
+        String[] batchRows = new String[IMPORT_BATCH_SIZE];
+        int[] batchLineNumbers = new int[IMPORT_BATCH_SIZE];
+        String[] fields = new String[5];
+        int batchSize = 0;
+        int lineNumber = 0;
+        int[] counts = new int[2]; // imported, rejected
+        try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.regionMatches(true, 0, "shelf", 0, 5))) {
+                    continue; // skip blank lines and the header row
+                }
+                batchRows[batchSize] = line;
+                batchLineNumbers[batchSize] = lineNumber;
+                if (++batchSize == IMPORT_BATCH_SIZE) {
+                    importBatch(batchRows, batchLineNumbers, batchSize, fields, counts, out);
+                    batchSize = 0;
                 }
             }
-            return -1;
-        } catch (Exception e) {
-            System.out.println("Error searching for product: " + e.getMessage());
-            return -1;
+            importBatch(batchRows, batchLineNumbers, batchSize, fields, counts, out);
+        }
+        checkpoint();
+
+        if (counts[1] > IMPORT_ERRORS_SHOWN) {
+            out.println("... and " + (counts[1] - IMPORT_ERRORS_SHOWN) + " more rejected rows.");
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        operationStats.record(Operation.IMPORT, elapsedNanos);
+        long elapsedMillis = elapsedNanos / 1_000_000;
+        out.println("----- IMPORTED " + counts[0] + " PRODUCTS, REJECTED " + counts[1] + " ROWS IN " + elapsedMillis + " ms -----");
+    }
+
+    // Helper method to validate and place one batch of CSV rows
+    private static void importBatch(String[] rows, int[] lineNumbers, int size, String[] fields, int[] counts, PrintWriter out) {
+        StockEngine stock = engine();
+        for (int i = 0; i < size; i++) {
+            try {
+                int columns = Csv.split(rows[i], fields);
+                if (columns != fields.length) {
+                    throw new IllegalArgumentException("Expected 5 columns (shelf,slot,name,quantity,price) but found " + columns + ".");
+                }
+                int shelf = parseIntField(fields[0], "shelf");
+                int slot = parseIntField(fields[1], "slot");
+                int quantity = parseIntField(fields[3], "quantity");
+                long priceMinor = checkPrice(parseDoubleField(fields[4], "price"));
+                stock.insert(shelf, slot, fields[2].trim(), quantity, priceMinor);
+                counts[0]++;
+            } catch (IllegalArgumentException e) {
+                if (++counts[1] <= IMPORT_ERRORS_SHOWN) {
+                    out.println("Line " + lineNumbers[i] + ": " + e.getMessage());
+                }
+            }
+            rows[i] = null;
+        }
+        commitLog();
+    }
+
+    private static int parseIntField(String value, String column) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + " [" + value.trim() + "].");
+        }
+    }
+
+    private static double parseDoubleField(String value, String column) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + column + " [" + value.trim() + "].");
+        }
+    }
+
+    // ========== 8. Browse Stock by Page ==========
+    private static void browseStock() {
+        if (engine() == null) {
+            System.out.println("Stock is not initialized. Please set up the stock first.");
+            return;
+        }
+        try {
+            System.out.print("[+] Enter stock range (e.g. 1-" + engine().shelfCount() + ", blank for all): ");
+            int[] range = parseShelfRange(scanner.nextLine());
+            System.out.print("[+] Show (A)ll, (O)ccupied or (E)mpty slots [A]: ");
+            SlotFilter filter = parseSlotFilter(scanner.nextLine());
+            System.out.print("[+] Enter page size [" + DEFAULT_PAGE_SIZE + "]: ");
+            String sizeText = scanner.nextLine().trim();
+            int pageSize = sizeText.isEmpty() ? DEFAULT_PAGE_SIZE : parsePageSize(sizeText);
+
+            StringBuilder page = new StringBuilder();
+            renderStockSummary(page, range[0], range[1]);
+            console.print(page);
+            long pages = countPages(range[0], range[1], filter, pageSize);
+            for (long pageNumber = 1; pageNumber <= pages; pageNumber++) {
+                renderStockPage(page, range[0], range[1], filter, pageSize, pageNumber);
+                console.println("-------- Page " + pageNumber + " of " + pages + " --------");
+                console.print(page);
+                console.flush();
+                if (pageNumber < pages) {
+                    System.out.print("[+] Press Enter for the next page or q to stop: ");
+                    if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                        break;
+                    }
+                }
+            }
+            if (pages == 0) {
+                console.println("No matching slots.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } finally {
+            console.flush();
+        }
+    }
+
+    // Helper method to parse "3-10", "5" or blank (all stocks) into a 0-based inclusive shelf range
+    private static int[] parseShelfRange(String text) {
+        text = text.trim();
+        if (text.isEmpty() || text.equalsIgnoreCase("all")) {
+            return new int[]{0, engine().shelfCount() - 1};
+        }
+        int dash = text.indexOf('-');
+        int from = parseIntField(dash == -1 ? text : text.substring(0, dash), "stock range");
+        int to = dash == -1 ? from : parseIntField(text.substring(dash + 1), "stock range");
+        if (from < 1 || to > engine().shelfCount() || from > to) {
+            throw new IllegalArgumentException("Invalid stock range. Choose stocks between 1 and " + engine().shelfCount() + ".");
+        }
+        return new int[]{from - 1, to - 1};
+    }
+
+    private static SlotFilter parseSlotFilter(String text) {
+        return switch (text.trim().toLowerCase(Locale.ROOT)) {
+            case "", "a", "all" -> SlotFilter.ALL;
+            case "o", "occupied" -> SlotFilter.OCCUPIED;
+            case "e", "empty" -> SlotFilter.EMPTY;
+            default -> throw new IllegalArgumentException("Invalid filter [" + text.trim() + "]. Choose all, occupied or empty.");
+        };
+    }
+
+    private static int parsePageSize(String text) {
+        int pageSize = parseIntField(text, "page size");
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Invalid page size [" + pageSize + "]. Choose between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        return pageSize;
+    }
+
+    // Helper methods to render the summary and pages of the browse view for the current warehouse
+    private static void renderStockSummary(StringBuilder out, int fromShelf, int toShelf) {
+        long start = System.nanoTime();
+        StockView.renderSummary(engine(), out, fromShelf, toShelf);
+        operationStats.record(Operation.VIEW, System.nanoTime() - start);
+    }
+
+    private static long countPages(int fromShelf, int toShelf, SlotFilter filter, int pageSize) {
+        return StockView.countPages(engine(), fromShelf, toShelf, filter, pageSize);
+    }
+
+    private static void renderStockPage(StringBuilder out, int fromShelf, int toShelf, SlotFilter filter, int pageSize, long pageNumber) {
+        long start = System.nanoTime();
+        StockView.renderPage(engine(), out, fromShelf, toShelf, filter, pageSize, pageNumber);
+        operationStats.record(Operation.VIEW, System.nanoTime() - start);
+    }
+
+    // ========== 9. Search Products ==========
+    private static void searchProducts() {
+        if (engine() == null) {
+            System.out.println("Stock is not initialized. Please set up the stock first.");
+            return;
+        }
+        try {
+            System.out.print("[+] Search by (N)ame prefix, (Q)uantity range or (P)rice range [N]: ");
+            String kind = scanner.nextLine().trim().toLowerCase(Locale.ROOT);
+            List<StockItem> found;
+            switch (kind) {
+                case "", "n", "name" -> {
+                    System.out.print("[+] Enter name prefix: ");
+                    found = searchByPrefix(scanner.nextLine().trim());
+                }
+                case "q", "quantity" -> {
+                    System.out.print("[+] Enter minimum quantity: ");
+                    String min = scanner.nextLine();
+                    System.out.print("[+] Enter maximum quantity: ");
+                    found = searchByQuantity(min, scanner.nextLine());
+                }
+                case "p", "price" -> {
+                    System.out.print("[+] Enter minimum price: ");
+                    String min = scanner.nextLine();
+                    System.out.print("[+] Enter maximum price: ");
+                    found = searchByPrice(min, scanner.nextLine());
+                }
+                default -> throw new IllegalArgumentException("Invalid search [" + kind + "]. Choose name, quantity or price.");
+            }
+            printSearchResults(found, console);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } finally {
+            console.flush();
+        }
+    }
+
+    // Helper methods to run the indexed searches; each asks for one match more than is shown
+    private static List<StockItem> searchByPrefix(String prefix) {
+        if (prefix.isEmpty()) {
+            throw new IllegalArgumentException("Name prefix cannot be empty.");
+        }
+        return engine().findByPrefix(prefix, SEARCH_RESULTS_SHOWN + 1);
+    }
+
+    private static List<StockItem> searchByQuantity(String minText, String maxText) {
+        int min = parseIntField(minText, "quantity");
+        int max = parseIntField(maxText, "quantity");
+        checkRange(min, max);
+        return engine().findByQuantity(min, max, SEARCH_RESULTS_SHOWN + 1);
+    }
+
+    private static List<StockItem> searchByPrice(String minText, String maxText) {
+        long min = checkPrice(parseDoubleField(minText, "price"));
+        long max = checkPrice(parseDoubleField(maxText, "price"));
+        checkRange(min, max);
+        return engine().findByPrice(min, max, SEARCH_RESULTS_SHOWN + 1);
+    }
+
+    private static void checkRange(long min, long max) {
+        if (min > max) {
+            throw new IllegalArgumentException("Minimum cannot be greater than maximum.");
+        }
+    }
+
+    private static void printSearchResults(List<StockItem> found, PrintWriter out) {
+        if (found.isEmpty()) {
+            out.println("No matching products.");
+            return;
+        }
+        int shown = Math.min(found.size(), SEARCH_RESULTS_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            out.println(describeProduct(found.get(i)));
+        }
+        out.println(found.size() > SEARCH_RESULTS_SHOWN ? "Showing the first " + SEARCH_RESULTS_SHOWN + " matching products." : "Found " + shown + " matching products.");
+    }
+
+    private static String describeProduct(StockItem item) {
+        return "Product [" + item.name() + "] is in shelf [" + item.shelf() + "], slot [" + item.slot()
+                + "], quantity [" + item.quantity() + "], price [" + formatPrice(item.price()) + "].";
+    }
+
+    // ========== 10. Inventory Report ==========
+    private static void inventoryReport() {
+        if (engine() == null) {
+            System.out.println("Stock is not initialized. Please set up the stock first.");
+            return;
+        }
+        try {
+            System.out.print("[+] Enter stock range for per-stock lines (e.g. 1-" + engine().shelfCount() + ", blank for totals only): ");
+            String rangeText = scanner.nextLine().trim();
+            StringBuilder report = new StringBuilder();
+            renderInventoryReport(report, rangeText.isEmpty() ? null : parseShelfRange(rangeText));
+            console.print(report);
+            if (engine().lowStockCount() > 0) {
+                System.out.print("[+] List low-stock products? (y/N): ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                    printSearchResults(findLowStock(), console);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } finally {
+            console.flush();
+        }
+    }
+
+    // Helper method to render the running inventory totals; per-stock lines only for the given 0-based range
+    private static void renderInventoryReport(StringBuilder out, int[] range) {
+        StockEngine stock = engine();
+        long start = System.nanoTime();
+        out.setLength(0);
+        out.append("-------- Inventory Report --------\n");
+        if (range != null) {
+            for (int i = range[0]; i <= range[1]; i++) {
+                out.append("Stock [").append(i + 1).append("]: ");
+                appendTotals(out, stock.matchingCount(i, SlotFilter.OCCUPIED), stock.slotsOnShelf(i), stock.unitsOnShelf(i),
+                        stock.valueOnShelf(i), stock.lowStockOnShelf(i));
+            }
+        }
+        out.append("Total: ");
+        appendTotals(out, stock.productCount(), stock.totalSlots(), stock.totalUnits(), stock.totalValue(), stock.lowStockCount());
+        out.append("Low stock means a quantity below [").append(stock.lowStockThreshold()).append("].\n");
+        operationStats.record(Operation.REPORT, System.nanoTime() - start);
+    }
+
+    private static void appendTotals(StringBuilder out, long occupied, long slots, long units, long value, long lowStock) {
+        out.append(occupied).append('/').append(slots).append(" occupied (")
+                .append(BigDecimal.valueOf(occupied * 100).divide(BigDecimal.valueOf(slots), 1, RoundingMode.HALF_UP).toPlainString()).append("%), units [").append(units)
+                .append("], value [").append(formatPrice(value)).append("], low stock [").append(lowStock).append("]\n");
+    }
+
+    private static List<StockItem> findLowStock() {
+        int threshold = engine().lowStockThreshold();
+        return threshold == 0 ? List.of() : engine().findByQuantity(0, threshold - 1, SEARCH_RESULTS_SHOWN + 1);
+    }
+
+    // ========== 11. Resize Stock ==========
+    // Adds a stock or changes the catalogues on one; products keep their stock and slot numbers.
+    private static void resizeStock() {
+        if (engine() == null) {
+            System.out.println("Error: Stock is not initialized. Please set up the stock first.");
+            return;
+        }
+        try {
+            System.out.print("[+] Enter stock number to resize (1-" + engine().shelfCount() + ", 0 to add a new stock): ");
+            int shelf = scanner.nextInt();
+            scanner.nextLine(); // Clear buffer
+            if (shelf != 0) {
+                engine().checkShelf(shelf);
+                System.out.println("Stock [" + shelf + "] has " + engine().slotsOnShelf(shelf - 1) + " catalogues.");
+            }
+            System.out.print("[+] Enter new number of catalogue: ");
+            int slots = scanner.nextInt();
+            scanner.nextLine(); // Clear buffer
+            String result = shelf == 0 ? addShelf(slots) : resizeShelf(shelf, slots);
+            commitLog();
+            System.out.println(result);
+        } catch (InputMismatchException e) {
+            System.out.println("Error: Please enter a valid integer.");
+            scanner.nextLine(); // Clear invalid input
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static String addShelf(int slots) {
+        int shelf = engine().addShelf(slots);
+        return "Stock [" + shelf + "] added with " + slots + " slots.";
+    }
+
+    private static String resizeShelf(int shelf, int slots) {
+        engine().resizeShelf(shelf, slots);
+        return "Stock [" + shelf + "] resized to " + slots + " slots.";
+    }
+
+    // ========== 12. Operation Statistics ==========
+    // The same statistics are published over JMX as stock:type=OperationStats.
+    private static void viewOperationStats() {
+        StringBuilder stats = new StringBuilder();
+        renderOperationStats(stats);
+        System.out.print(stats);
+        System.out.print("[+] Reset statistics? (y/N): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            operationStats.reset();
+            System.out.println("---------- Statistics reset. ----------");
+        }
+    }
+
+    // Helper method to render one line per operation called since the statistics started or were reset
+    private static void renderOperationStats(StringBuilder out) {
+        out.setLength(0);
+        out.append("-------- Operation Statistics --------\n");
+        out.append("Over ").append(BigDecimal.valueOf(operationStats.getElapsedSeconds()).setScale(1, RoundingMode.HALF_UP).toPlainString())
+                .append(" s, latencies in microseconds:\n");
+        boolean any = false;
+        for (OperationSummary summary : operationStats.getOperations()) {
+            if (summary.getCount() == 0) {
+                continue;
+            }
+            any = true;
+            out.append(summary.getOperation()).append(": ").append(summary.getCount()).append(" calls (")
+                    .append(BigDecimal.valueOf(summary.getThroughputPerSecond()).setScale(1, RoundingMode.HALF_UP).toPlainString())
+                    .append("/s), mean ").append(formatMicros(summary.getMeanNanos()))
+                    .append(", p50 ").append(formatMicros(summary.getP50Nanos()))
+                    .append(", p90 ").append(formatMicros(summary.getP90Nanos()))
+                    .append(", p99 ").append(formatMicros(summary.getP99Nanos()))
+                    .append(", max ").append(formatMicros(summary.getMaxNanos())).append('\n');
+        }
+        if (!any) {
+            out.append("No operations recorded yet.\n");
+        }
+    }
+
+    private static String formatMicros(long nanos) {
+        return BigDecimal.valueOf(nanos, 3).setScale(1, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    // Helper method to publish the operation statistics over JMX; the program works without them
+    private static void registerOperationStats() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(operationStats, new ObjectName(OperationStats.OBJECT_NAME));
+        } catch (JMException e) {
+            System.out.println("Warning: Could not register operation statistics with JMX: " + e.getMessage());
+        }
+    }
+
+    // ========== 13. Warehouses ==========
+    // Each warehouse is a separate stock with its own layout, history and saved files. The other options
+    // work on the current warehouse; the list and the product lookup cover every warehouse at once.
+    private static void manageWarehouses() {
+        try {
+            StringBuilder list = new StringBuilder();
+            renderWarehouses(list);
+            console.print(list);
+            console.flush();
+            System.out.print("[+] (S)witch warehouse, (L)ocate a product in every warehouse, or press Enter to go back: ");
+            switch (scanner.nextLine().trim().toLowerCase(Locale.ROOT)) {
+                case "" -> {
+                }
+                case "s", "switch" -> {
+                    System.out.print("[+] Enter warehouse name: ");
+                    System.out.println(useWarehouse(scanner.nextLine().trim()));
+                }
+                case "l", "locate" -> {
+                    System.out.print("[+] Enter product name: ");
+                    printLocated(scanner.nextLine().trim(), console);
+                }
+                default -> throw new IllegalArgumentException("Invalid choice. Choose switch or locate.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } finally {
+            console.flush();
+        }
+    }
+
+    // Helper method to make a warehouse current for this thread, which in server mode is one connection.
+    // Changes to the warehouse being left are committed first, as the log committed later is the new one's.
+    private static String useWarehouse(String name) {
+        Warehouses.checkName(name);
+        String known = warehouses.nameOf(name);
+        String warehouse = name.equalsIgnoreCase(DEFAULT_WAREHOUSE) ? DEFAULT_WAREHOUSE : known != null ? known : name;
+        commitLog();
+        currentWarehouse.set(warehouse);
+        StockEngine stock = engine();
+        return stock == null
+                ? "Using warehouse [" + warehouse + "]. It is not set up yet; set up or import its stock first."
+                : "Using warehouse [" + warehouse + "] with " + stock.productCount() + " products on " + stock.shelfCount() + " stocks.";
+    }
+
+    // Helper method to render the running totals of every warehouse, gathered in parallel
+    private static void renderWarehouses(StringBuilder out) {
+        long start = System.nanoTime();
+        out.setLength(0);
+        out.append("-------- Warehouses --------\n");
+        String current = currentWarehouse.get();
+        Map<String, Totals> totals = warehouses.totalsByWarehouse();
+        Totals all = new Totals(0, 0, 0, 0, 0);
+        for (Map.Entry<String, Totals> entry : totals.entrySet()) {
+            Totals warehouse = entry.getValue();
+            out.append("Warehouse [").append(entry.getKey()).append(entry.getKey().equalsIgnoreCase(current) ? "] (current): " : "]: ");
+            appendTotals(out, warehouse.products(), warehouse.slots(), warehouse.units(), warehouse.value(), warehouse.lowStock());
+            all = all.plus(warehouse);
+        }
+        if (warehouses.get(current) == null) {
+            out.append("Warehouse [").append(current).append("] (current): not set up\n");
+        }
+        if (totals.size() > 1) {
+            out.append("Total: ");
+            appendTotals(out, all.products(), all.slots(), all.units(), all.value(), all.lowStock());
+        }
+        operationStats.record(Operation.REPORT, System.nanoTime() - start);
+    }
+
+    // Helper method to look a product up in every warehouse at once
+    private static void printLocated(String name, PrintWriter out) {
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Product name cannot be empty.");
+        }
+        long start = System.nanoTime();
+        List<Located> found = warehouses.locate(name);
+        operationStats.record(Operation.LOCATE, System.nanoTime() - start);
+        if (found.isEmpty()) {
+            out.println("Product [" + name + "] is not stocked in any warehouse.");
+            return;
+        }
+        for (Located located : found) {
+            out.println("Warehouse [" + located.warehouse() + "]: " + describeProduct(located.item()));
+        }
+    }
+
+    // ========== Batch Mode ==========
+    // Runs one command per line from a file or stdin ("-"). Results go through one buffered
+    // writer that is flushed when the batch ends, and the write-ahead log is committed once.
+    private static int runBatch(String source) {
+        int failures = 0;
+        PrintWriter out = console;
+        try (BufferedReader in = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(source), StandardCharsets.UTF_8)) {
+            String[] fields = new String[8];
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    runBatchCommand(trimmed, fields, out);
+                } catch (IllegalArgumentException | UncheckedIOException e) {
+                    failures++;
+                    out.println("Error on line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            failures++;
+            out.println("Error reading batch input: " + e.getMessage());
+        } finally {
+            try {
+                commitLog();
+            } catch (UncheckedIOException e) {
+                failures++;
+                out.println("Error: " + e.getMessage());
+            }
+            out.flush();
+        }
+        return failures;
+    }
+
+    private static void runBatchCommand(String line, String[] fields, PrintWriter out) throws IOException {
+        int count = Csv.split(line, fields);
+        String command = fields[0].trim().toLowerCase(Locale.ROOT);
+        boolean needsStock = switch (command) {
+            case "setup", "import", "stats", "use", "warehouses", "locate" -> false;
+            default -> true;
+        };
+        if (needsStock && engine() == null) {
+            throw new IllegalArgumentException("Stock is not initialized. Please set up the stock first.");
+        }
+        switch (command) {
+            case "setup" -> {
+                // setup,<catalogues on stock 1>,<catalogues on stock 2>,...
+                requireFields(count, 2, Integer.MAX_VALUE, "setup,<catalogues>,...");
+                int[] layout = parseLayout(line.substring(line.indexOf(',') + 1));
+                checkServerSlots(0, layout);
+                setUpStock(layout);
+                out.println("Stock set up with " + engine().totalSlots() + " slots across " + engine().shelfCount() + " stocks.");
+            }
+            case "import" -> {
+                requireFields(count, 3, 3, "import,\"<catalogues,...>\",<csv file>");
+                int[] layout = parseLayout(fields[1]);
+                checkServerSlots(0, layout);
+                Path csvFile = resolveImportFile(fields[2].trim());
+                importStockFromCsv(layout, csvFile, out);
+            }
+            case "insert" -> {
+                requireFields(count, 6, 6, "insert,<shelf>,<slot>,<name>,<quantity>,<price>");
+                int shelf = parseIntField(fields[1], "shelf");
+                int slot = parseIntField(fields[2], "slot");
+                int quantity = parseIntField(fields[4], "quantity");
+                long priceMinor = checkPrice(parseDoubleField(fields[5], "price"));
+                StockItem item = engine().insert(shelf, slot, fields[3].trim(), quantity, priceMinor);
+                out.println("Product [" + item.name() + "] added to shelf [" + item.shelf() + "], slot [" + item.slot() + "].");
+            }
+            case "update" -> {
+                requireFields(count, 5, 5, "update,<name>,<new name>,<quantity>,<price>");
+                String name = requireProductName(fields[1].trim());
+                int quantity = parseIntField(fields[3], "quantity");
+                long priceMinor = checkPrice(parseDoubleField(fields[4], "price"));
+                StockItem item = engine().update(name, fields[2].trim(), quantity, priceMinor);
+                if (item == null) {
+                    throw new IllegalArgumentException("Product [" + name + "] not found.");
+                }
+                out.println("Product [" + item.name() + "] updated successfully.");
+            }
+            case "delete" -> {
+                requireFields(count, 2, 2, "delete,<name>");
+                String name = requireProductName(fields[1].trim());
+                StockItem item = engine().delete(name);
+                if (item == null) {
+                    throw new IllegalArgumentException("Product [" + name + "] not found.");
+                }
+                out.println("Product [" + item.name() + "] deleted successfully.");
+            }
+            case "find" -> {
+                requireFields(count, 2, 2, "find,<name>");
+                out.println(describeProduct(findExistingProduct(fields[1].trim())));
+            }
+            case "prefix" -> {
+                requireFields(count, 2, 2, "prefix,<name prefix>");
+                printSearchResults(searchByPrefix(fields[1].trim()), out);
+            }
+            case "quantity" -> {
+                requireFields(count, 3, 3, "quantity,<min>,<max>");
+                printSearchResults(searchByQuantity(fields[1], fields[2]), out);
+            }
+            case "price" -> {
+                requireFields(count, 3, 3, "price,<min>,<max>");
+                printSearchResults(searchByPrice(fields[1], fields[2]), out);
+            }
+            case "view" -> {
+                // view prints everything; view,<stocks>,<all|occupied|empty>,<page size>,<page> prints one page
+                requireFields(count, 1, 5, "view or view,<stocks>,<all|occupied|empty>,<page size>,<page>");
+                if (count == 1) {
+                    printProducts(out);
+                    return;
+                }
+                requireFields(count, 5, 5, "view,<stocks>,<all|occupied|empty>,<page size>,<page>");
+                int[] range = parseShelfRange(fields[1]);
+                SlotFilter filter = parseSlotFilter(fields[2]);
+                int pageSize = parsePageSize(fields[3]);
+                long pages = countPages(range[0], range[1], filter, pageSize);
+                int pageNumber = parseIntField(fields[4], "page");
+                if (pageNumber < 1 || pageNumber > Math.max(pages, 1)) {
+                    throw new IllegalArgumentException("Invalid page [" + pageNumber + "]. Choose between 1 and " + Math.max(pages, 1) + ".");
+                }
+                if (pages == 0) {
+                    out.println("No matching slots.");
+                    return;
+                }
+                StringBuilder page = new StringBuilder();
+                renderStockPage(page, range[0], range[1], filter, pageSize, pageNumber);
+                out.println("-------- Page " + pageNumber + " of " + pages + " --------");
+                out.print(page);
+            }
+            case "report" -> {
+                requireFields(count, 1, 2, "report or report,<stocks>");
+                StringBuilder report = new StringBuilder();
+                renderInventoryReport(report, count == 2 ? parseShelfRange(fields[1]) : null);
+                out.print(report);
+            }
+            case "lowstock" -> {
+                requireFields(count, 1, 1, "lowstock");
+                printSearchResults(findLowStock(), out);
+            }
+            case "summary" -> {
+                requireFields(count, 1, 2, "summary or summary,<stocks>");
+                int[] range = parseShelfRange(count == 2 ? fields[1] : "");
+                StringBuilder summary = new StringBuilder();
+                renderStockSummary(summary, range[0], range[1]);
+                out.print(summary);
+            }
+            case "history" -> {
+                requireFields(count, 1, 1, "history");
+                printHistory(out);
+            }
+            case "addstock" -> {
+                requireFields(count, 2, 2, "addstock,<catalogues>");
+                int slots = parseIntField(fields[1], "catalogues");
+                checkServerSlots(engine().totalSlots(), slots);
+                out.println(addShelf(slots));
+            }
+            case "resize" -> {
+                requireFields(count, 3, 3, "resize,<stock>,<catalogues>");
+                int shelf = parseIntField(fields[1], "stock");
+                int slots = parseIntField(fields[2], "catalogues");
+                checkServerSlots(engine().totalSlots() - engine().slotsOnShelf(engine().checkShelf(shelf)), slots);
+                out.println(resizeShelf(shelf, slots));
+            }
+            case "stats" -> {
+                // stats prints the operation statistics; stats,reset also clears them afterwards
+                requireFields(count, 1, 2, "stats or stats,reset");
+                if (count == 2 && !fields[1].trim().equalsIgnoreCase("reset")) {
+                    throw new IllegalArgumentException("Expected stats or stats,reset.");
+                }
+                StringBuilder stats = new StringBuilder();
+                renderOperationStats(stats);
+                out.print(stats);
+                if (count == 2) {
+                    operationStats.reset();
+                }
+            }
+            case "use" -> {
+                requireFields(count, 2, 2, "use,<warehouse>");
+                out.println(useWarehouse(fields[1].trim()));
+            }
+            case "warehouses" -> {
+                requireFields(count, 1, 1, "warehouses");
+                StringBuilder list = new StringBuilder();
+                renderWarehouses(list);
+                out.print(list);
+            }
+            case "locate" -> {
+                requireFields(count, 2, 2, "locate,<name>");
+                printLocated(fields[1].trim(), out);
+            }
+            default -> throw new IllegalArgumentException("Unknown command [" + fields[0].trim() + "]. Use setup, import, insert, update, delete, find, prefix, quantity, price, view, summary, report, lowstock, history, addstock, resize, stats, use, warehouses or locate.");
         }
     }
 
-    // Helper method to get shelf and slot from stock index
-    private static int[] getShelfAndSlot(int index) {
-        for (int i = 0; i < maxShelves; i++) {
-            if (index >= shelfStartIndex[i] && index < shelfStartIndex[i] + slotsPerShelf[i]) {
-                int slot = index - shelfStartIndex[i] + 1;
-                return new int[]{i + 1, slot};
+    private static void requireFields(int count, int min, int max, String usage) {
+        if (count < min || count > max) {
+            throw new IllegalArgumentException("Expected " + usage + ".");
+        }
+    }
+
+    private static String requireProductName(String name) {
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Product name cannot be empty.");
+        }
+        return name;
+    }
+
+    private static StockItem findExistingProduct(String name) {
+        StockItem item = engine().find(requireProductName(name));
+        if (item == null) {
+            throw new IllegalArgumentException("Product [" + name + "] not found.");
+        }
+        return item;
+    }
+
+    // Helper method to describe where the next product could go on a shelf
+    private static String describeFirstFreeSlot(int shelfIndex) {
+        int freeSlot = engine().findFirstFreeSlot(shelfIndex);
+        return freeSlot == -1 ? " Shelf is full." : " First free slot: [" + freeSlot + "].";
+    }
+
+    // ========== Server Mode ==========
+    // Serves the batch commands to many clients at once over a line protocol on a loopback TCP port.
+    // A request is one command line; the response is its output followed by a line holding a single ".".
+    // Every connection runs on its own virtual thread when the JDK has them, otherwise on a cached pool.
+    private static void runServer(int port) throws IOException, InterruptedException {
+        ExecutorService connections = newThreadPerTaskExecutor();
+        Thread mainThread = Thread.currentThread();
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        // Ctrl+C closes the listener, then waits for main to checkpoint and close the data directory
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            closeQuietly(serverSocket);
+            try {
+                mainThread.join(30_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        System.out.println("Serving stock on " + serverSocket.getLocalSocketAddress() + " with "
+                + (connections instanceof ThreadPoolExecutor ? "a thread pool" : "virtual threads") + ". Press Ctrl+C to stop.");
+        try {
+            while (true) {
+                Socket client = serverSocket.accept();
+                connections.execute(() -> serveClient(client));
             }
+        } catch (SocketException e) {
+            // Listener closed by the shutdown hook
+        } finally {
+            connections.shutdown();
+            for (Socket client : serverClients) {
+                closeQuietly(client);
+            }
+            connections.awaitTermination(10, TimeUnit.SECONDS);
+            System.out.println("---------- Server stopped. ----------");
         }
-        return new int[]{-1, -1};
     }
 
+    private static void serveClient(Socket client) {
+        serverClients.add(client);
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8)))) {
+            client.setTcpNoDelay(true);
+            alertOutput.set(out);
+            String[] fields = new String[8];
+            String line;
+            while ((line = in.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.equalsIgnoreCase("quit")) {
+                    break;
+                }
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    runServerCommand(trimmed, fields, out);
+                }
+                out.println(".");
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client disconnected
+        } finally {
+            serverClients.remove(client);
+            alertOutput.remove();
+            currentWarehouse.remove();
+        }
+    }
+
+    private static void runServerCommand(String line, String[] fields, PrintWriter out) {
+        // setup and import replace the whole stock, so they wait until no other command is running
+        int comma = line.indexOf(',');
+        String command = (comma == -1 ? line : line.substring(0, comma)).trim();
+        boolean replacesStock = command.equalsIgnoreCase("setup") || command.equalsIgnoreCase("import");
+        Lock lock = replacesStock ? stockReplaceLock.writeLock() : stockReplaceLock.readLock();
+        lock.lock();
+        try {
+            runBatchCommand(line, fields, out);
+            commitLog();
+        } catch (IOException | RuntimeException e) {
+            // Any failure ends only this command; the connection carries on with the next
+            out.println("Error: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Helper method to refuse, in server mode, a layout that would take a warehouse past MAX_SERVER_SLOTS
+    private static void checkServerSlots(long keptSlots, int... addedSlots) {
+        if (!serverMode) {
+            return;
+        }
+        long slots = keptSlots;
+        for (int added : addedSlots) {
+            slots += added;
+        }
+        if (slots > MAX_SERVER_SLOTS) {
+            throw new IllegalArgumentException("Too many catalogues: the server allows at most " + MAX_SERVER_SLOTS + " per warehouse.");
+        }
+    }
+
+    // Helper method to find a CSV file to import. In server mode it must be inside the data directory.
+    private static Path resolveImportFile(String fileName) throws IOException {
+        Path csvFile = Path.of(fileName);
+        if (serverMode) {
+            if (dataDirectory == null) {
+                throw new IllegalArgumentException("Import is only available in server mode with -Dstock.data.dir.");
+            }
+            csvFile = dataDirectory.resolve(fileName);
+        }
+        if (!Files.isReadable(csvFile)) {
+            throw new IllegalArgumentException("Cannot read file [" + fileName + "].");
+        }
+        if (serverMode && !csvFile.toRealPath().startsWith(dataDirectory.toRealPath())) {
+            throw new IllegalArgumentException("Cannot import [" + fileName + "]: the file must be inside the data directory.");
+        }
+        return csvFile;
+    }
+
+    // Helper method to create a virtual-thread-per-task executor when the running JDK has one
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private static int parsePort(String text) {
+        int port = parseIntField(text, "port");
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid port [" + port + "]. Choose between 0 and 65535.");
+        }
+        return port;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    // ========== Load Generator ==========
+    // Drives a running server over loopback: sets up one shelf per client, then every client cycles
+    // insert, find, update and delete over its own shelf and reports throughput and latency percentiles.
+    // This replaces the server's stock.
+    private static void runLoadTest(int port, int clients, int requests) throws IOException, InterruptedException {
+        if (clients <= 0 || requests <= 0) {
+            throw new IllegalArgumentException("Clients and requests must be positive.");
+        }
+        int slotsPerClient = Math.max(1, Math.min(1000, requests / 4));
+        try (Socket admin = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(admin.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(admin.getOutputStream(), StandardCharsets.UTF_8))) {
+            StringBuilder setup = new StringBuilder("setup");
+            for (int i = 0; i < clients; i++) {
+                setup.append(',').append(slotsPerClient);
+            }
+            String reply = exchange(in, out, setup.toString());
+            if (reply.startsWith("Error")) {
+                throw new IllegalStateException(reply.trim());
+            }
+        }
+
+        long[][] latencies = new long[clients][requests];
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService workers = newThreadPerTaskExecutor();
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            workers.execute(() -> {
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                     BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                     Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+                    socket.setTcpNoDelay(true);
+                    start.await();
+                    for (int i = 0; i < requests; i++) {
+                        int slot = (i / 4) % slotsPerClient + 1;
+                        String name = "load-" + client + "-" + slot;
+                        String request = switch (i % 4) {
+                            case 0 -> "insert," + (client + 1) + "," + slot + "," + name + ",1,1.00";
+                            case 1 -> "find," + name;
+                            case 2 -> "update," + name + "," + name + ",2,2.00";
+                            default -> "delete," + name;
+                        };
+                        long begin = System.nanoTime();
+                        String reply = exchange(in, out, request);
+                        latencies[client][i] = System.nanoTime() - begin;
+                        if (reply.startsWith("Error")) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } catch (IOException | InterruptedException e) {
+                    errors.incrementAndGet();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - begin;
+
+        long[] all = new long[clients * requests];
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, c * requests, requests);
+        }
+        Arrays.sort(all);
+        System.out.println("Requests: " + all.length + " from " + clients + " clients, errors: " + errors.get());
+        System.out.println("Elapsed: " + elapsed / 1_000_000 + " ms, throughput: " + (long) (all.length / (elapsed / 1e9)) + " requests/s");
+        System.out.println("Latency p50: " + percentileMicros(all, 0.50) + " us, p99: " + percentileMicros(all, 0.99)
+                + " us, p99.9: " + percentileMicros(all, 0.999) + " us, max: " + all[all.length - 1] / 1000 + " us");
+    }
+
+    // Helper method to send one request and read its response up to the "." terminator
+    private static String exchange(BufferedReader in, Writer out, String request) throws IOException {
+        out.write(request);
+        out.write('\n');
+        out.flush();
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals(".")) {
+                return response.toString();
+            }
+            response.append(line).append('\n');
+        }
+        throw new EOFException("Server closed the connection.");
+    }
+
+    private static long percentileMicros(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))] / 1000;
+    }
 
     // Display menu
     private static void showMenu() {
         while (true) {
             try {
                 System.out.println("\n--------- Console Stock Management System -----------");
+                if (warehouses.size() > 1 || !currentWarehouse.get().equals(DEFAULT_WAREHOUSE)) {
+                    System.out.println("Warehouse: [" + currentWarehouse.get() + "]");
+                }
                 System.out.println("1. Set Up Stock with Catalogue");
                 System.out.println("2. View Product in Stock");
                 System.out.println("3. Insert Product to Stock Catalogue");
                 System.out.println("4. Update Product in Stock Catalogue by Product Name");
                 System.out.println("5. Delete Product in Stock Catalogue by Name");
                 System.out.println("6. View Insertion History in Stock Catalogue");
-                System.out.println("7. Exit");
-                System.out.print("[*] Choose an option (1-7): ");
+                System.out.println("7. Import Stock from CSV");
+                System.out.println("8. Browse Stock by Page");
+                System.out.println("9. Search Products");
+                System.out.println("10. Inventory Report");
+                System.out.println("11. Resize Stock");
+                System.out.println("12. Operation Statistics");
+                System.out.println("13. Warehouses");
+                System.out.println("14. Exit");
+                System.out.print("[*] Choose an option (1-14): ");
                 int choice = scanner.nextInt();
                 scanner.nextLine(); // Clear buffer
 
@@ -429,11 +1583,18 @@ public class ConsoleStockManagementSystem {
                     case 4 -> updateProduct();
                     case 5 -> deleteProduct();
                     case 6 -> viewInsertionHistory();
-                    case 7 -> {
+                    case 7 -> importStock();
+                    case 8 -> browseStock();
+                    case 9 -> searchProducts();
+                    case 10 -> inventoryReport();
+                    case 11 -> resizeStock();
+                    case 12 -> viewOperationStats();
+                    case 13 -> manageWarehouses();
+                    case 14 -> {
                         System.out.println("---------- Exiting system. Goodbye! ----------");
                         return;
                     }
-                    default -> System.out.println("Error: Invalid option. Please choose between 1 and 7.");
+                    default -> System.out.println("Error: Invalid option. Please choose between 1 and 14.");
                 }
             } catch (InputMismatchException e) {
                 System.out.println("Error: Please enter a valid integer for the menu option.");
@@ -444,4 +1605,4 @@ public class ConsoleStockManagementSystem {
             }
         }
     }
-}
\ No newline at end of file
+}
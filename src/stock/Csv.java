@@ -0,0 +1,58 @@
+package stock;
+
+/**
+ * Minimal CSV field splitter. Fields are separated by commas and may be
+ * wrapped in double quotes, inside which commas are literal and a doubled
+ * quote stands for one quote character.
+ */
+public final class Csv {
+    private Csv() {
+    }
+
+    /**
+     * Splits {@code line} into {@code fields} and returns the number of fields
+     * found. Fields beyond the array length are counted but not stored.
+     */
+    public static int split(String line, String[] fields) {
+        int count = 0;
+        int length = line.length();
+        int position = 0;
+        while (true) {
+            String field;
+            if (position < length && line.charAt(position) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                position++;
+                while (position < length) {
+                    char c = line.charAt(position++);
+                    if (c == '"') {
+                        if (position < length && line.charAt(position) == '"') {
+                            quoted.append('"');
+                            position++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+                // Ignore anything between the closing quote and the next comma
+                int comma = line.indexOf(',', position);
+                position = comma == -1 ? length : comma;
+                field = quoted.toString();
+            } else {
+                int comma = line.indexOf(',', position);
+                int end = comma == -1 ? length : comma;
+                field = line.substring(position, end);
+                position = end;
+            }
+            if (count < fields.length) {
+                fields[count] = field;
+            }
+            count++;
+            if (position >= length) {
+                return count;
+            }
+            position++; // skip the comma
+        }
+    }
+}
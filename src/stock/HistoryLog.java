@@ -0,0 +1,195 @@
+package stock;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer of stock operations, kept as primitives in parallel arrays
+ * allocated in chunks. Appends take no lock; a per-slot stamp lets
+ * {@link #forEach} skip entries overwritten while it reads.
+ */
+public class HistoryLog {
+    public enum Operation {
+        INSERT("Inserted"),
+        UPDATE("Updated"),
+        DELETE("Deleted");
+
+        private static final Operation[] VALUES = values();
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /** Receives retained entries, oldest first. */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(long epochMillis, int productId, Operation operation);
+    }
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int SPINS_BEFORE_YIELD = 64;
+    private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final class Chunk {
+        final long[] times;
+        final int[] productIds;
+        final byte[] operations;
+        // sequence + 1 once that sequence's entry is complete, -(sequence + 1) while it is being written
+        final long[] stamps;
+
+        Chunk(int size) {
+            times = new long[size];
+            productIds = new int[size];
+            operations = new byte[size];
+            stamps = new long[size];
+        }
+    }
+
+    private final int retention;
+    private final AtomicLong appended = new AtomicLong(); // entries ever appended; the next sequence number
+    // Replaced by a longer copy when it grows; chunks, once added, stay in place
+    private volatile Chunk[] chunks = new Chunk[1];
+
+    public HistoryLog(int retention) {
+        if (retention <= 0) {
+            throw new IllegalArgumentException("History retention must be positive.");
+        }
+        this.retention = retention;
+    }
+
+    public void append(long epochMillis, int productId, Operation operation) {
+        long sequence = appended.getAndIncrement();
+        int slot = sequence < retention ? (int) sequence : (int) (sequence % retention);
+        Chunk chunk = chunkForWrite(slot >>> CHUNK_BITS);
+        int i = slot & CHUNK_SIZE - 1;
+        // The entry being replaced must be complete; only an append that laps a stalled one can wait here
+        long replaced = sequence < retention ? 0 : sequence - retention + 1;
+        for (int spins = 0; (long) STAMPS.getAcquire(chunk.stamps, i) != replaced; spins++) {
+            if (spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield(); // the writer being waited for may not be running
+            }
+        }
+        STAMPS.setOpaque(chunk.stamps, i, -(sequence + 1));
+        VarHandle.storeStoreFence();
+        chunk.times[i] = epochMillis;
+        chunk.productIds[i] = productId;
+        chunk.operations[i] = (byte) operation.ordinal();
+        STAMPS.setRelease(chunk.stamps, i, sequence + 1);
+    }
+
+    public int size() {
+        return (int) Math.min(appended.get(), retention);
+    }
+
+    public boolean isEmpty() {
+        return appended.get() == 0;
+    }
+
+    public int retention() {
+        return retention;
+    }
+
+    /** Visits the retained entries, oldest first; safe while other threads append. */
+    public void forEach(EntryVisitor visitor) {
+        long end = appended.get();
+        long start = Math.max(0, end - retention);
+        Chunk[] current = chunks;
+        int slot = (int) (start % retention) - 1;
+        for (long sequence = start; sequence < end; sequence++) {
+            slot = slot + 1 == retention ? 0 : slot + 1;
+            int index = slot >>> CHUNK_BITS;
+            Chunk chunk = index < current.length ? current[index] : null;
+            if (chunk == null) {
+                current = chunks;
+                chunk = index < current.length ? current[index] : null;
+                if (chunk == null) {
+                    continue;
+                }
+            }
+            int i = slot & CHUNK_SIZE - 1;
+            long stamp = (long) STAMPS.getAcquire(chunk.stamps, i);
+            if (stamp != sequence + 1) {
+                continue; // still being written, or already overwritten
+            }
+            long time = chunk.times[i];
+            int productId = chunk.productIds[i];
+            byte operation = chunk.operations[i];
+            VarHandle.loadLoadFence();
+            if ((long) STAMPS.getVolatile(chunk.stamps, i) == stamp) {
+                visitor.visit(time, productId, Operation.VALUES[operation]);
+            }
+        }
+    }
+
+    // Accessors take a logical position, 0 being the oldest retained entry
+    public long timeAt(int position) {
+        int slot = physical(position);
+        return chunks[slot >>> CHUNK_BITS].times[slot & CHUNK_SIZE - 1];
+    }
+
+    public int productIdAt(int position) {
+        int slot = physical(position);
+        return chunks[slot >>> CHUNK_BITS].productIds[slot & CHUNK_SIZE - 1];
+    }
+
+    public Operation operationAt(int position) {
+        int slot = physical(position);
+        return Operation.VALUES[chunks[slot >>> CHUNK_BITS].operations[slot & CHUNK_SIZE - 1]];
+    }
+
+    /** Drops every entry; not to be called while another thread appends. */
+    public synchronized void clear() {
+        chunks = new Chunk[1];
+        appended.set(0);
+    }
+
+    private int physical(int position) {
+        long size = size();
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("History position " + position + " out of range 0.." + (size - 1));
+        }
+        long sequence = appended.get() - size + position;
+        return sequence < retention ? (int) sequence : (int) (sequence % retention);
+    }
+
+    private Chunk chunkForWrite(int index) {
+        Chunk[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        return addChunk(index);
+    }
+
+    // Only taken when a chunk is first needed, at most once per 4096 slots
+    private synchronized Chunk addChunk(int index) {
+        Chunk[] current = chunks;
+        if (index >= current.length) {
+            current = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+        } else if (current[index] != null) {
+            return current[index];
+        } else {
+            current = current.clone();
+        }
+        Chunk chunk = new Chunk(Math.min(CHUNK_SIZE, retention - (index << CHUNK_BITS)));
+        current[index] = chunk;
+        chunks = current;
+        return chunk;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryLog[size=" + size() + ", retention=" + retention + ", appended=" + appended.get() + "]";
+    }
+}
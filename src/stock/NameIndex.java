@@ -0,0 +1,248 @@
+package stock;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Case-insensitive map from product name to slot reference, keyed by
+ * {@link NameStore} ids in segmented open-addressing tables. Lookups probe
+ * optimistically and retry under the segment's read lock if a writer interfered.
+ */
+final class NameIndex {
+    static final long ABSENT = -1;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int EMPTY = -1;
+
+    // Entry columns of one segment; replaced as a whole when the segment grows
+    private static final class Table {
+        final int[] nameIds;
+        final int[] hashes;
+        final long[] refs;
+
+        Table(int capacity) {
+            nameIds = new int[capacity];
+            hashes = new int[capacity];
+            refs = new long[capacity];
+            Arrays.fill(nameIds, EMPTY);
+        }
+    }
+
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        Table table = new Table(16);
+        int size;
+    }
+
+    private final NameStore names;
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    NameIndex(NameStore names) {
+        this.names = names;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Returns a copy of this index on {@code names}, a store the indexed
+     * names were copied into; {@code newIds} maps each id here to its copy.
+     * Entries keep their hashes and places, so nothing is hashed or compared.
+     * Not to be called while entries are being added or removed.
+     */
+    NameIndex remapped(NameStore names, int[] newIds) {
+        NameIndex copy = new NameIndex(names);
+        for (int s = 0; s < segments.length; s++) {
+            Table table = segments[s].table;
+            Table mapped = new Table(table.nameIds.length);
+            for (int i = 0; i < table.nameIds.length; i++) {
+                if (table.nameIds[i] != EMPTY) {
+                    mapped.nameIds[i] = newIds[table.nameIds[i]];
+                }
+            }
+            System.arraycopy(table.hashes, 0, mapped.hashes, 0, table.hashes.length);
+            System.arraycopy(table.refs, 0, mapped.refs, 0, table.refs.length);
+            copy.segments[s].table = mapped;
+            copy.segments[s].size = segments[s].size;
+        }
+        return copy;
+    }
+
+    /** Returns the slot reference of the product named {@code name}, ignoring case, or {@link #ABSENT}. */
+    long get(String name) {
+        int hash = spread(NameStore.foldedHash(name));
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            // Find the only entry with this hash; two such entries are rare enough to take the locked path
+            Table table = segment.table;
+            int mask = table.nameIds.length - 1;
+            int candidate = EMPTY;
+            long candidateRef = ABSENT;
+            boolean ambiguous = false;
+            for (int i = hash & mask, probes = 0; probes <= mask && table.nameIds[i] != EMPTY; i = (i + 1) & mask, probes++) {
+                if (table.hashes[i] == hash) {
+                    ambiguous = candidate != EMPTY;
+                    candidate = table.nameIds[i];
+                    candidateRef = table.refs[i];
+                }
+            }
+            if (segment.lock.validate(stamp) && !ambiguous) {
+                return candidate != EMPTY && names.equalsIgnoreCase(candidate, name) ? candidateRef : ABSENT;
+            }
+        }
+        stamp = segment.lock.readLock();
+        try {
+            Table table = segment.table;
+            int i = find(table, hash, name);
+            return i == EMPTY ? ABSENT : table.refs[i];
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Stores {@code name} and maps it to {@code ref} unless another product
+     * already has it, ignoring case. Returns the new name id, or -1 if taken.
+     */
+    int claim(String name, long ref) {
+        int hash = spread(NameStore.foldedHash(name));
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            if (find(segment.table, hash, name) != EMPTY) {
+                return EMPTY;
+            }
+            int nameId = names.add(name);
+            insert(segment, hash, nameId, ref);
+            return nameId;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the name of the entry for {@code ref} with {@code newName},
+     * which must equal the old name ignoring case. Returns the new name id.
+     */
+    int replace(int oldNameId, String newName, long ref) {
+        int hash = spread(names.foldedHash(oldNameId));
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            int nameId = names.add(newName);
+            int i = find(segment.table, hash, oldNameId);
+            if (i != EMPTY && segment.table.refs[i] == ref) {
+                segment.table.nameIds[i] = nameId;
+            }
+            return nameId;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Maps a stored name to {@code ref}, replacing any entry with the same name ignoring case. */
+    void put(int nameId, long ref) {
+        int hash = spread(names.foldedHash(nameId));
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            int i = find(segment.table, hash, nameId);
+            if (i != EMPTY) {
+                segment.table.nameIds[i] = nameId;
+                segment.table.refs[i] = ref;
+            } else {
+                insert(segment, hash, nameId, ref);
+            }
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Removes the entry with this name, ignoring case, if it still maps to {@code ref}. */
+    void remove(int nameId, long ref) {
+        int hash = spread(names.foldedHash(nameId));
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            Table table = segment.table;
+            int i = find(table, hash, nameId);
+            if (i == EMPTY || table.refs[i] != ref) {
+                return;
+            }
+            // Backward-shift deletion: pull later entries of the probe run into the gap, so no tombstones are needed
+            int mask = table.nameIds.length - 1;
+            for (int j = (i + 1) & mask; table.nameIds[j] != EMPTY; j = (j + 1) & mask) {
+                int home = table.hashes[j] & mask;
+                boolean staysPut = i <= j ? i < home && home <= j : i < home || home <= j;
+                if (!staysPut) {
+                    table.nameIds[i] = table.nameIds[j];
+                    table.hashes[i] = table.hashes[j];
+                    table.refs[i] = table.refs[j];
+                    i = j;
+                }
+            }
+            table.nameIds[i] = EMPTY;
+            segment.size--;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    private int find(Table table, int hash, String name) {
+        int mask = table.nameIds.length - 1;
+        for (int i = hash & mask; table.nameIds[i] != EMPTY; i = (i + 1) & mask) {
+            if (table.hashes[i] == hash && names.equalsIgnoreCase(table.nameIds[i], name)) {
+                return i;
+            }
+        }
+        return EMPTY;
+    }
+
+    private int find(Table table, int hash, int nameId) {
+        int mask = table.nameIds.length - 1;
+        for (int i = hash & mask; table.nameIds[i] != EMPTY; i = (i + 1) & mask) {
+            if (table.hashes[i] == hash && names.compareIgnoreCase(table.nameIds[i], nameId) == 0) {
+                return i;
+            }
+        }
+        return EMPTY;
+    }
+
+    // Runs under the write lock; tables are kept at most three quarters full
+    private static void insert(Segment segment, int hash, int nameId, long ref) {
+        if ((segment.size + 1) * 4 > segment.table.nameIds.length * 3) {
+            Table old = segment.table;
+            Table grown = new Table(old.nameIds.length * 2);
+            for (int i = 0; i < old.nameIds.length; i++) {
+                if (old.nameIds[i] != EMPTY) {
+                    place(grown, old.hashes[i], old.nameIds[i], old.refs[i]);
+                }
+            }
+            segment.table = grown;
+        }
+        place(segment.table, hash, nameId, ref);
+        segment.size++;
+    }
+
+    private static void place(Table table, int hash, int nameId, long ref) {
+        int mask = table.nameIds.length - 1;
+        int i = hash & mask;
+        while (table.nameIds[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table.nameIds[i] = nameId;
+        table.hashes[i] = hash;
+        table.refs[i] = ref;
+    }
+
+    // The top bits pick the segment and the low bits the table slot, so both need to be well mixed
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+}
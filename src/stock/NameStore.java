@@ -0,0 +1,320 @@
+package stock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only pool of product names stored as UTF-8 in shared pages and
+ * referred to by int ids. Adds take no lock, and case-insensitive lookups
+ * read straight from the pages without allocating.
+ */
+public class NameStore {
+    private static final int PAGE_BYTES = 1 << 20;
+    private static final int LARGE_NAME_BYTES = PAGE_BYTES / 4; // longer names get a page of their own
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // Per-id columns for CHUNK_SIZE consecutive ids
+    private static final class Chunk {
+        final long[] addresses = new long[CHUNK_SIZE]; // page index << 32 | offset in page
+        final int[] lengths = new int[CHUNK_SIZE]; // UTF-8 bytes
+        final int[] hashes = new int[CHUNK_SIZE]; // case-folded hash
+    }
+
+    // The page bytes are being appended to, and the next free byte in it, which may overshoot its end
+    private static final class Page {
+        final int index;
+        final AtomicInteger position = new AtomicInteger();
+
+        Page(int index) {
+            this.index = index;
+        }
+    }
+
+    // Replaced by a longer copy when they grow; entries, once set, never change, so readers can use whichever copy they see
+    private volatile byte[][] pages = new byte[16][];
+    private volatile Chunk[] chunks = new Chunk[16];
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile Page current; // null until the first name is added
+    private int pageCount; // guarded by this
+
+    /** Stores a name and returns its id. */
+    public int add(String name) {
+        int length = encodedLength(name);
+        long address = allocate(length);
+        byte[] page = pages[(int) (address >>> 32)];
+        int position = (int) address;
+        for (int i = 0; i < name.length(); ) {
+            int cp = codePointAt(name, i);
+            i += Character.charCount(cp);
+            position = encode(cp, page, position);
+        }
+        return register(address, length, foldedHash(name));
+    }
+
+    /** Stores a name given as UTF-8 bytes and returns its id. */
+    public int add(byte[] utf8, int offset, int length) {
+        long address = allocate(length);
+        System.arraycopy(utf8, offset, pages[(int) (address >>> 32)], (int) address, length);
+        int hash = 0;
+        byte[] page = pages[(int) (address >>> 32)];
+        for (int position = (int) address, end = position + length; position < end; ) {
+            int cp = decodeAt(page, position);
+            position += sequenceLength(page[position]);
+            hash = 31 * hash + fold(cp);
+        }
+        return register(address, length, hash);
+    }
+
+    /** Copies a name stored in {@code source} and returns its id here. */
+    public int add(NameStore source, int id) {
+        Chunk chunk = source.chunk(id);
+        long sourceAddress = chunk.addresses[id & CHUNK_SIZE - 1];
+        int length = chunk.lengths[id & CHUNK_SIZE - 1];
+        long address = allocate(length);
+        System.arraycopy(source.pages[(int) (sourceAddress >>> 32)], (int) sourceAddress, pages[(int) (address >>> 32)], (int) address, length);
+        return register(address, length, chunk.hashes[id & CHUNK_SIZE - 1]);
+    }
+
+    /** Returns the number of ids handed out so far. */
+    public int size() {
+        return size.get();
+    }
+
+    /** Decodes a name. */
+    public String get(int id) {
+        Chunk chunk = chunk(id);
+        long address = chunk.addresses[id & CHUNK_SIZE - 1];
+        return new String(pages[(int) (address >>> 32)], (int) address, chunk.lengths[id & CHUNK_SIZE - 1], StandardCharsets.UTF_8);
+    }
+
+    public int utf8Length(int id) {
+        return chunk(id).lengths[id & CHUNK_SIZE - 1];
+    }
+
+    /** Writes a name's UTF-8 bytes at the buffer's position and advances it. */
+    public void copyUtf8(int id, ByteBuffer out) {
+        Chunk chunk = chunk(id);
+        long address = chunk.addresses[id & CHUNK_SIZE - 1];
+        out.put(pages[(int) (address >>> 32)], (int) address, chunk.lengths[id & CHUNK_SIZE - 1]);
+    }
+
+    /** Returns the case-folded hash computed when the name was added; equal to {@link #foldedHash(String)} of it. */
+    public int foldedHash(int id) {
+        return chunk(id).hashes[id & CHUNK_SIZE - 1];
+    }
+
+    /** Compares a stored name with {@code name}, exactly. */
+    public boolean equals(int id, String name) {
+        Chunk chunk = chunk(id);
+        long address = chunk.addresses[id & CHUNK_SIZE - 1];
+        byte[] page = pages[(int) (address >>> 32)];
+        int position = (int) address;
+        int end = position + chunk.lengths[id & CHUNK_SIZE - 1];
+        int i = 0;
+        while (position < end && i < name.length()) {
+            int cp = codePointAt(name, i);
+            if (decodeAt(page, position) != cp) {
+                return false;
+            }
+            position += sequenceLength(page[position]);
+            i += Character.charCount(cp);
+        }
+        return position == end && i == name.length();
+    }
+
+    /** Compares a stored name with {@code name}, ignoring case. */
+    public boolean equalsIgnoreCase(int id, String name) {
+        return compareIgnoreCase(id, name, false) == 0;
+    }
+
+    /** Compares two stored names, ignoring case. */
+    public boolean equalsIgnoreCase(int id, int otherId) {
+        return foldedHash(id) == foldedHash(otherId) && compareIgnoreCase(id, otherId) == 0;
+    }
+
+    /** Orders two stored names by their case-folded code points. */
+    public int compareIgnoreCase(int id, int otherId) {
+        Chunk chunk = chunk(id);
+        long address = chunk.addresses[id & CHUNK_SIZE - 1];
+        byte[] page = pages[(int) (address >>> 32)];
+        int position = (int) address;
+        int end = position + chunk.lengths[id & CHUNK_SIZE - 1];
+        Chunk otherChunk = chunk(otherId);
+        long otherAddress = otherChunk.addresses[otherId & CHUNK_SIZE - 1];
+        byte[] otherPage = pages[(int) (otherAddress >>> 32)];
+        int otherPosition = (int) otherAddress;
+        int otherEnd = otherPosition + otherChunk.lengths[otherId & CHUNK_SIZE - 1];
+        while (position < end && otherPosition < otherEnd) {
+            int byCodePoint = Integer.compare(fold(decodeAt(page, position)), fold(decodeAt(otherPage, otherPosition)));
+            if (byCodePoint != 0) {
+                return byCodePoint;
+            }
+            position += sequenceLength(page[position]);
+            otherPosition += sequenceLength(otherPage[otherPosition]);
+        }
+        return Boolean.compare(position < end, otherPosition < otherEnd);
+    }
+
+    /**
+     * Orders a stored name against {@code name} by case-folded code points.
+     * With {@code prefixOnly}, a stored name that starts with {@code name}
+     * compares as equal.
+     */
+    public int compareIgnoreCase(int id, String name, boolean prefixOnly) {
+        Chunk chunk = chunk(id);
+        long address = chunk.addresses[id & CHUNK_SIZE - 1];
+        byte[] page = pages[(int) (address >>> 32)];
+        int position = (int) address;
+        int end = position + chunk.lengths[id & CHUNK_SIZE - 1];
+        int i = 0;
+        while (position < end && i < name.length()) {
+            int cp = codePointAt(name, i);
+            int byCodePoint = Integer.compare(fold(decodeAt(page, position)), fold(cp));
+            if (byCodePoint != 0) {
+                return byCodePoint;
+            }
+            position += sequenceLength(page[position]);
+            i += Character.charCount(cp);
+        }
+        if (i < name.length()) {
+            return -1; // the stored name is a proper prefix of name
+        }
+        return prefixOnly || position == end ? 0 : 1;
+    }
+
+    /** Hash of a name's case-folded code points, computed without building the folded string. */
+    public static int foldedHash(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); ) {
+            int cp = codePointAt(name, i);
+            i += Character.charCount(cp);
+            hash = 31 * hash + fold(cp);
+        }
+        return hash;
+    }
+
+    private static int fold(int cp) {
+        return Character.toLowerCase(Character.toUpperCase(cp));
+    }
+
+    // Reserves length bytes in the current page, starting a new page when it is too full
+    private long allocate(int length) {
+        if (length > LARGE_NAME_BYTES) {
+            return (long) addPage(length) << 32;
+        }
+        while (true) {
+            Page page = current;
+            if (page != null) {
+                int position = page.position.getAndAdd(length);
+                if (position + length <= PAGE_BYTES) {
+                    return (long) page.index << 32 | position;
+                }
+            }
+            replacePage(page);
+        }
+    }
+
+    // Makes a new page current, unless another writer has already replaced the full one
+    private synchronized void replacePage(Page full) {
+        if (current == full) {
+            current = new Page(addPage(PAGE_BYTES));
+        }
+    }
+
+    // Returns the index of a new page
+    private synchronized int addPage(int bytes) {
+        byte[][] grown = pageCount == pages.length ? Arrays.copyOf(pages, pageCount * 2) : pages.clone();
+        grown[pageCount] = new byte[bytes];
+        pages = grown;
+        return pageCount++;
+    }
+
+    private int register(long address, int length, int hash) {
+        int id = size.getAndIncrement();
+        Chunk chunk = chunkForWrite(id >>> CHUNK_BITS);
+        chunk.addresses[id & CHUNK_SIZE - 1] = address;
+        chunk.lengths[id & CHUNK_SIZE - 1] = length;
+        chunk.hashes[id & CHUNK_SIZE - 1] = hash;
+        return id;
+    }
+
+    private Chunk chunk(int id) {
+        return chunks[id >>> CHUNK_BITS];
+    }
+
+    private Chunk chunkForWrite(int index) {
+        Chunk[] currentChunks = chunks;
+        if (index < currentChunks.length && currentChunks[index] != null) {
+            return currentChunks[index];
+        }
+        return addChunk(index);
+    }
+
+    private synchronized Chunk addChunk(int index) {
+        Chunk[] grown = chunks;
+        if (index < grown.length && grown[index] != null) {
+            return grown[index];
+        }
+        grown = Arrays.copyOf(grown, index < grown.length ? grown.length : Math.max(index + 1, grown.length * 2));
+        Chunk chunk = new Chunk();
+        grown[index] = chunk;
+        chunks = grown;
+        return chunk;
+    }
+
+    // Unpaired surrogates are stored as '?', as String.getBytes does, and compared as such
+    private static int codePointAt(String name, int index) {
+        int cp = name.codePointAt(index);
+        return cp <= 0xFFFF && Character.isSurrogate((char) cp) ? '?' : cp;
+    }
+
+    private static int encodedLength(String name) {
+        int length = 0;
+        for (int i = 0; i < name.length(); ) {
+            int cp = codePointAt(name, i);
+            i += Character.charCount(cp);
+            length += cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+        }
+        return length;
+    }
+
+    private static int encode(int cp, byte[] page, int position) {
+        if (cp < 0x80) {
+            page[position++] = (byte) cp;
+        } else if (cp < 0x800) {
+            page[position++] = (byte) (0xC0 | cp >> 6);
+            page[position++] = (byte) (0x80 | cp & 0x3F);
+        } else if (cp < 0x10000) {
+            page[position++] = (byte) (0xE0 | cp >> 12);
+            page[position++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            page[position++] = (byte) (0x80 | cp & 0x3F);
+        } else {
+            page[position++] = (byte) (0xF0 | cp >> 18);
+            page[position++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            page[position++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            page[position++] = (byte) (0x80 | cp & 0x3F);
+        }
+        return position;
+    }
+
+    // Names are written by this class or by a snapshot of it, so every sequence is well formed
+    private static int decodeAt(byte[] page, int position) {
+        int lead = page[position] & 0xFF;
+        if (lead < 0x80) {
+            return lead;
+        } else if (lead < 0xE0) {
+            return (lead & 0x1F) << 6 | page[position + 1] & 0x3F;
+        } else if (lead < 0xF0) {
+            return (lead & 0x0F) << 12 | (page[position + 1] & 0x3F) << 6 | page[position + 2] & 0x3F;
+        }
+        return (lead & 0x07) << 18 | (page[position + 1] & 0x3F) << 12 | (page[position + 2] & 0x3F) << 6 | page[position + 3] & 0x3F;
+    }
+
+    private static int sequenceLength(byte lead) {
+        int bits = lead & 0xFF;
+        return bits < 0x80 ? 1 : bits < 0xE0 ? 2 : bits < 0xF0 ? 3 : 4;
+    }
+}
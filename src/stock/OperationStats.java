@@ -0,0 +1,143 @@
+package stock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counts and latency histograms per stock operation, cheap enough to
+ * leave on in production: recording one call takes no lock and allocates
+ * nothing, it only adds to a counter and one histogram bucket.
+ * <p>
+ * Latencies are bucketed log-linearly, eight buckets per power of two, so
+ * a reported percentile is at most 12.5% above the true value. Throughput
+ * is the call count divided by the time since the statistics started or
+ * were last reset.
+ */
+public class OperationStats implements OperationStatsMXBean {
+    /** The operations that are timed. */
+    public enum Operation { SETUP, IMPORT, VIEW, INSERT, UPDATE, DELETE, FIND, SEARCH, REPORT, HISTORY, RESIZE, LOCATE }
+
+    /** Name the statistics are registered under with the platform MBean server. */
+    public static final String OBJECT_NAME = "stock:type=OperationStats";
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private static final class Timer {
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+    }
+
+    private final Timer[] timers = new Timer[Operation.values().length];
+    private volatile long startNanos = System.nanoTime();
+
+    public OperationStats() {
+        for (int i = 0; i < timers.length; i++) {
+            timers[i] = new Timer();
+        }
+    }
+
+    /** Records one call of {@code operation} that took {@code nanos}. */
+    public void record(Operation operation, long nanos) {
+        Timer timer = timers[operation.ordinal()];
+        nanos = Math.max(nanos, 0);
+        timer.buckets.incrementAndGet(bucketOf(nanos));
+        timer.totalNanos.add(nanos);
+        if (nanos > timer.maxNanos.get()) {
+            timer.maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /** Summarises one operation. Calls recorded meanwhile may be partly included. */
+    public OperationSummary summary(Operation operation) {
+        Timer timer = timers[operation.ordinal()];
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = timer.buckets.get(i);
+            count += counts[i];
+        }
+        long max = timer.maxNanos.get();
+        return new OperationSummary(operation.name().toLowerCase(Locale.ROOT), count, count / getElapsedSeconds(),
+                count == 0 ? 0 : timer.totalNanos.sum() / count, percentile(counts, count, 0.50, max),
+                percentile(counts, count, 0.90, max), percentile(counts, count, 0.99, max), max);
+    }
+
+    @Override
+    public List<OperationSummary> getOperations() {
+        List<OperationSummary> summaries = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            summaries.add(summary(operation));
+        }
+        return summaries;
+    }
+
+    @Override
+    public long getTotalCount() {
+        long count = 0;
+        for (Timer timer : timers) {
+            for (int i = 0; i < BUCKETS; i++) {
+                count += timer.buckets.get(i);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double getElapsedSeconds() {
+        return Math.max(System.nanoTime() - startNanos, 1) / 1e9;
+    }
+
+    /** Clears every count and restarts the throughput clock. Calls recorded meanwhile may be kept or lost. */
+    @Override
+    public void reset() {
+        for (Timer timer : timers) {
+            for (int i = 0; i < BUCKETS; i++) {
+                timer.buckets.set(i, 0);
+            }
+            timer.totalNanos.reset();
+            timer.maxNanos.set(0);
+        }
+        startNanos = System.nanoTime();
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; above, each power of two is split into SUB_BUCKETS equal parts
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long lowestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    // Upper bound of the bucket holding the given rank, capped at the largest value recorded
+    private static long percentile(long[] counts, long count, double fraction, long max) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * fraction));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == counts.length - 1 ? max : Math.min(lowestValueIn(i + 1) - 1, max);
+            }
+        }
+        return max;
+    }
+}
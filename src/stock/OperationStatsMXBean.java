@@ -0,0 +1,19 @@
+package stock;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link OperationStats}, so tools such as JConsole
+ * can watch operation rates and latencies under {@value OperationStats#OBJECT_NAME}.
+ */
+public interface OperationStatsMXBean {
+    /** One summary per operation, including those not called yet. */
+    List<OperationSummary> getOperations();
+
+    long getTotalCount();
+
+    /** Seconds since the statistics started or were last reset. */
+    double getElapsedSeconds();
+
+    void reset();
+}
@@ -0,0 +1,69 @@
+package stock;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Call count, throughput and latency percentiles of one operation. Written
+ * with getters rather than as a record so JMX maps it to composite data.
+ */
+public final class OperationSummary {
+    private final String operation;
+    private final long count;
+    private final double throughputPerSecond;
+    private final long meanNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    public OperationSummary(String operation, long count, double throughputPerSecond, long meanNanos,
+                            long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+        this.operation = operation;
+        this.count = count;
+        this.throughputPerSecond = throughputPerSecond;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /** Rebuilds a summary on the client side of a JMX proxy. */
+    public static OperationSummary from(CompositeData data) {
+        return new OperationSummary((String) data.get("operation"), (Long) data.get("count"), (Double) data.get("throughputPerSecond"),
+                (Long) data.get("meanNanos"), (Long) data.get("p50Nanos"), (Long) data.get("p90Nanos"),
+                (Long) data.get("p99Nanos"), (Long) data.get("maxNanos"));
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getThroughputPerSecond() {
+        return throughputPerSecond;
+    }
+
+    public long getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+}
@@ -0,0 +1,1365 @@
+package stock;
+
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe stock store for a shelf layout that can change while in use.
+ * Every shelf has its own lock, and products are addressed by their shelf
+ * index and slot offset packed into a long.
+ */
+public class StockEngine {
+    /** Which slots a read helper visits. */
+    public enum SlotFilter { ALL, OCCUPIED, EMPTY }
+
+    /** Told when an update takes a product's quantity below the low-stock threshold. */
+    public interface LowStockListener {
+        void lowStock(StockItem item, int previousQuantity, int threshold);
+    }
+
+    /** Receives history entries, oldest first. */
+    public interface HistoryVisitor {
+        void visit(long epochMillis, String productName, HistoryLog.Operation operation);
+    }
+
+    private static final int MAX_SLOTS_PER_SHELF = 1 << 30;
+    // Product ids are ints, so at most Integer.MAX_VALUE products of this value each still sum within a long
+    private static final long MAX_PRODUCT_VALUE = Long.MAX_VALUE / Integer.MAX_VALUE;
+    private static final int REGISTRY_CHUNK_BITS = 12;
+    private static final int REGISTRY_CHUNK_SIZE = 1 << REGISTRY_CHUNK_BITS;
+    private static final int MIN_IDS_BETWEEN_SWEEPS = 4096; // product ids, and names added to the store
+
+    // One shelf's slots. Columns hold at least slots entries; offsets at or past slots are always empty.
+    private static final class Shelf {
+        final ReentrantLock lock = new ReentrantLock();
+        int[] nameIds; // ids in the name store; meaningful only while the slot is occupied
+        int[] quantities;
+        long[] prices; // minor units (cents)
+        int[] productIds;
+        long[] occupancy; // one bit per slot, set when occupied
+        // Written under the lock, read without it by listings and reports
+        volatile int slots;
+        volatile int freeSlots;
+        volatile long units;
+        volatile long value; // sum of quantity * price, in minor units
+        volatile int lowStock;
+
+        Shelf(int slots) {
+            this(slots, new long[(slots + 63) >>> 6], new int[slots], new int[slots], new long[slots]);
+            freeSlots = slots;
+        }
+
+        Shelf(int slots, long[] occupancy, int[] productIds, int[] quantities, long[] prices) {
+            this.slots = slots;
+            this.occupancy = occupancy;
+            this.productIds = productIds;
+            this.quantities = quantities;
+            this.prices = prices;
+            nameIds = new int[quantities.length];
+        }
+
+        int words() {
+            return (slots + 63) >>> 6;
+        }
+
+        boolean occupied(int offset) {
+            return (occupancy[offset >>> 6] & 1L << offset) != 0;
+        }
+
+        // Grows the columns to hold at least slots entries, doubling them so repeated small extensions stay cheap
+        void ensureCapacity(int slots) {
+            if (slots <= nameIds.length) {
+                return;
+            }
+            int capacity = (int) Math.min(MAX_SLOTS_PER_SHELF, Math.max(slots, 2L * nameIds.length));
+            nameIds = Arrays.copyOf(nameIds, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            productIds = Arrays.copyOf(productIds, capacity);
+            occupancy = Arrays.copyOf(occupancy, (capacity + 63) >>> 6);
+        }
+    }
+
+    private final ReentrantLock layoutLock = new ReentrantLock(); // taken to add a shelf, and before taking every shelf lock
+    private volatile Shelf[] shelves; // replaced, never changed in place, when a shelf is added
+    private final AtomicLong totalSlots = new AtomicLong();
+    private volatile NameTables tables; // replaced with every shelf locked; readers holding no shelf lock read it once
+    private final ConcurrentSkipListSet<IndexEntry> quantityIndex = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<IndexEntry> priceIndex = new ConcurrentSkipListSet<>();
+    private volatile boolean indexesBuilt; // set, with every shelf locked, once the sorted name, quantity and price indexes are filled
+    private final AtomicInteger productCount = new AtomicInteger();
+    private final LongAdder totalUnits = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final LongAdder lowStockCount = new LongAdder();
+    private volatile int lowStockThreshold; // quantities below this count as low stock; changed with every shelf locked
+    private final List<LowStockListener> lowStockListeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextProductId = new AtomicInteger(); // one past the highest product id handed out
+    // Ids freed by the last sweep, reused before new ones are taken; both replaced with every shelf locked
+    private volatile int[] freeProductIds = new int[0];
+    private final AtomicInteger nextFreeProductId = new AtomicInteger();
+    private volatile int sweepThreshold = MIN_IDS_BETWEEN_SWEEPS; // sweep once nextProductId passes this
+    private volatile int namesThreshold = MIN_IDS_BETWEEN_SWEEPS; // or once the name store holds more names than this
+    // Sweeps hold the write lock, history reads the read lock
+    private final ReentrantReadWriteLock sweepLock = new ReentrantReadWriteLock();
+    private final HistoryLog history; // appended to without a lock, by writers on any shelf
+    // Product id -> id of its latest name, in chunks that stay in place once added
+    private volatile int[][] productNameIds = new int[1][];
+    private final Object registryGrowthLock = new Object(); // taken only to add a registry chunk
+    private volatile WriteAheadLog log;
+    private volatile OperationStats stats;
+
+    public StockEngine(int[] layout, int historyRetention) {
+        if (layout.length == 0) {
+            throw new IllegalArgumentException("Number of stocks must be positive.");
+        }
+        Shelf[] initial = new Shelf[layout.length];
+        for (int i = 0; i < layout.length; i++) {
+            checkSlotCount(layout[i]);
+            initial[i] = new Shelf(layout[i]);
+            totalSlots.addAndGet(layout[i]);
+        }
+        shelves = initial;
+        history = new HistoryLog(historyRetention);
+        tables = new NameTables(new NameStore());
+    }
+
+    private StockEngine(StockSnapshot snapshot) {
+        history = snapshot.history();
+        tables = new NameTables(snapshot.names());
+        int[] registry = snapshot.productNameIds();
+        for (int productId = 0; productId < registry.length; productId++) {
+            register(productId, registry[productId]);
+        }
+        nextProductId.set(registry.length);
+        sweepThreshold = registry.length + Math.max(MIN_IDS_BETWEEN_SWEEPS, registry.length);
+        namesThreshold = tables.names.size() + Math.max(MIN_IDS_BETWEEN_SWEEPS, tables.names.size());
+        int[] slotsPerShelf = snapshot.slotsPerShelf();
+        Shelf[] restored = new Shelf[slotsPerShelf.length];
+        for (int i = 0; i < slotsPerShelf.length; i++) {
+            Shelf shelf = new Shelf(slotsPerShelf[i], snapshot.shelfOccupancy()[i], snapshot.productIds()[i],
+                    snapshot.quantities()[i], snapshot.prices()[i]);
+            restored[i] = shelf;
+            totalSlots.addAndGet(shelf.slots);
+            int occupied = 0;
+            for (int w = 0; w < shelf.occupancy.length; w++) {
+                long word = shelf.occupancy[w];
+                occupied += Long.bitCount(word);
+                while (word != 0) {
+                    int offset = (w << 6) + Long.numberOfTrailingZeros(word);
+                    shelf.nameIds[offset] = registry[shelf.productIds[offset]];
+                    tables.index.put(shelf.nameIds[offset], slotRef(i, offset));
+                    countStock(shelf, shelf.quantities[offset], shelf.prices[offset], 1);
+                    word &= word - 1;
+                }
+            }
+            shelf.freeSlots = shelf.slots - occupied;
+            productCount.addAndGet(occupied);
+        }
+        shelves = restored;
+    }
+
+    /** Rebuilds an engine from a snapshot; the snapshot's arrays are taken over, not copied. */
+    public static StockEngine restore(StockSnapshot snapshot) {
+        return new StockEngine(snapshot);
+    }
+
+    /**
+     * Sets the log that every later change is appended to. Callers commit the
+     * log themselves, so several changes can share one sync.
+     */
+    public void attachLog(WriteAheadLog log) {
+        this.log = log;
+    }
+
+    /** Sets where the latency of every later operation is recorded. */
+    public void attachStats(OperationStats stats) {
+        this.stats = stats;
+    }
+
+    // ========== Operations ==========
+
+    /** Places a new product; throws IllegalArgumentException when a check fails. */
+    public StockItem insert(int shelf, int slot, String name, int quantity, long price) {
+        long start = System.nanoTime();
+        try {
+            int shelfIndex = checkShelf(shelf);
+            Shelf target = shelves[shelfIndex];
+            int offset = slotOffset(target, slot);
+            checkName(name);
+            checkQuantity(quantity);
+            checkPrice(price);
+            checkValue(quantity, price);
+            target.lock.lock();
+            try {
+                slotOffset(target, slot); // the shelf may have shrunk since the first check
+                requireSlotFree(shelfIndex, target, offset);
+                int nameId = claimName(name, slotRef(shelfIndex, offset));
+                int productId = newProductId();
+                long time = System.currentTimeMillis();
+                WriteAheadLog currentLog = log;
+                if (currentLog != null) {
+                    currentLog.logInsert(shelfIndex, offset, productId, name, quantity, price, time);
+                }
+                applyInsert(shelfIndex, target, offset, productId, nameId, quantity, price, time);
+            } finally {
+                target.lock.unlock();
+            }
+            if (sweepDue()) {
+                sweepIfDue();
+            }
+            return new StockItem(name, shelf, slot, quantity, price);
+        } finally {
+            record(OperationStats.Operation.INSERT, start);
+        }
+    }
+
+    /** Renames and reprices a product; returns its new state, or null when no product has that name. */
+    public StockItem update(String name, String newName, int quantity, long price) {
+        long start = System.nanoTime();
+        try {
+            if (newName.isEmpty()) {
+                throw new IllegalArgumentException("New product name cannot be empty.");
+            }
+            checkQuantity(quantity);
+            checkPrice(price);
+            checkValue(quantity, price);
+            StockItem updated;
+            int previousQuantity;
+            int threshold;
+            while (true) {
+                long ref = tables.index.get(name);
+                if (ref == NameIndex.ABSENT) {
+                    return null;
+                }
+                int shelfIndex = shelfOf(ref);
+                int offset = offsetOf(ref);
+                Shelf target = shelves[shelfIndex];
+                target.lock.lock();
+                try {
+                    if (!holds(target, offset, name)) {
+                        continue; // moved or deleted while we waited for the lock
+                    }
+                    previousQuantity = target.quantities[offset];
+                    threshold = lowStockThreshold;
+                    int oldNameId = target.nameIds[offset];
+                    boolean renamed = !tables.names.equalsIgnoreCase(oldNameId, newName);
+                    int newNameId;
+                    if (renamed) {
+                        newNameId = claimName(newName, ref);
+                    } else if (!tables.names.equals(oldNameId, newName)) {
+                        newNameId = tables.index.replace(oldNameId, newName, ref); // only the case changes
+                    } else {
+                        newNameId = oldNameId;
+                    }
+                    long time = System.currentTimeMillis();
+                    WriteAheadLog currentLog = log;
+                    if (currentLog != null) {
+                        currentLog.logUpdate(shelfIndex, offset, newName, quantity, price, time);
+                    }
+                    applyUpdate(shelfIndex, target, offset, newNameId, quantity, price, time);
+                    if (renamed) {
+                        tables.index.remove(oldNameId, ref);
+                    }
+                    updated = new StockItem(newName, shelfIndex + 1, offset + 1, quantity, price);
+                    break;
+                } finally {
+                    target.lock.unlock();
+                }
+            }
+            if (sweepDue()) {
+                sweepIfDue();
+            }
+            // Listeners run after the shelf lock is released, and only when the quantity crosses the threshold
+            if (previousQuantity >= threshold && quantity < threshold) {
+                for (LowStockListener listener : lowStockListeners) {
+                    listener.lowStock(updated, previousQuantity, threshold);
+                }
+            }
+            return updated;
+        } finally {
+            record(OperationStats.Operation.UPDATE, start);
+        }
+    }
+
+    /** Removes a product; returns what was removed, or null when no product has that name. */
+    public StockItem delete(String name) {
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                long ref = tables.index.get(name);
+                if (ref == NameIndex.ABSENT) {
+                    return null;
+                }
+                int shelfIndex = shelfOf(ref);
+                int offset = offsetOf(ref);
+                Shelf target = shelves[shelfIndex];
+                target.lock.lock();
+                try {
+                    if (!holds(target, offset, name)) {
+                        continue;
+                    }
+                    int nameId = target.nameIds[offset];
+                    StockItem removed = itemAt(shelfIndex, target, offset);
+                    long time = System.currentTimeMillis();
+                    WriteAheadLog currentLog = log;
+                    if (currentLog != null) {
+                        currentLog.logDelete(shelfIndex, offset, time);
+                    }
+                    applyDelete(shelfIndex, target, offset, time);
+                    tables.index.remove(nameId, ref);
+                    return removed;
+                } finally {
+                    target.lock.unlock();
+                }
+            }
+        } finally {
+            record(OperationStats.Operation.DELETE, start);
+        }
+    }
+
+    /** Looks a product up by case-insensitive name; returns null when it is not stocked. */
+    public StockItem find(String name) {
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                long ref = tables.index.get(name);
+                if (ref == NameIndex.ABSENT) {
+                    return null;
+                }
+                int shelfIndex = shelfOf(ref);
+                int offset = offsetOf(ref);
+                Shelf target = shelves[shelfIndex];
+                target.lock.lock();
+                try {
+                    if (!holds(target, offset, name)) {
+                        continue;
+                    }
+                    return itemAt(shelfIndex, target, offset);
+                } finally {
+                    target.lock.unlock();
+                }
+            }
+        } finally {
+            record(OperationStats.Operation.FIND, start);
+        }
+    }
+
+    /** Returns up to {@code limit} products whose name starts with {@code prefix}, ignoring case, in name order. */
+    public List<StockItem> findByPrefix(String prefix, int limit) {
+        long start = System.nanoTime();
+        try {
+            buildIndexes();
+            List<StockItem> found = new ArrayList<>();
+            NameTables searched = tables;
+            for (NameEntry entry : searched.sorted.tailMap(new Probe(prefix)).keySet()) {
+                if (found.size() >= limit || searched.names.compareIgnoreCase(entry.nameId, prefix, true) != 0) {
+                    break;
+                }
+                StockItem item = readIndexed(entry.ref, searched.names, entry.nameId);
+                if (item != null) {
+                    found.add(item);
+                }
+            }
+            return found;
+        } finally {
+            record(OperationStats.Operation.SEARCH, start);
+        }
+    }
+
+    /** Returns up to {@code limit} products with a quantity in [min, max], lowest first. */
+    public List<StockItem> findByQuantity(int min, int max, int limit) {
+        return findInRange(quantityIndex, min, max, limit, StockItem::quantity);
+    }
+
+    /** Returns up to {@code limit} products with a price in minor units in [min, max], cheapest first. */
+    public List<StockItem> findByPrice(long min, long max, int limit) {
+        return findInRange(priceIndex, min, max, limit, StockItem::price);
+    }
+
+    // ========== Layout changes ==========
+    // Products keep their shelf and slot numbers, so no index is touched.
+
+    /** Adds an empty shelf after the last one; returns its 1-based number. */
+    public int addShelf(int slots) {
+        long start = System.nanoTime();
+        try {
+            checkSlotCount(slots);
+            layoutLock.lock();
+            try {
+                int shelfIndex = shelves.length;
+                WriteAheadLog currentLog = log;
+                if (currentLog != null) {
+                    currentLog.logResize(shelfIndex, slots);
+                }
+                applyAddShelf(slots);
+                return shelfIndex + 1;
+            } finally {
+                layoutLock.unlock();
+            }
+        } finally {
+            record(OperationStats.Operation.RESIZE, start);
+        }
+    }
+
+    /**
+     * Changes the number of slots on a shelf. Growing leaves every product in
+     * place; shrinking is refused while any slot that would go is occupied.
+     */
+    public void resizeShelf(int shelf, int slots) {
+        long start = System.nanoTime();
+        try {
+            int shelfIndex = checkShelf(shelf);
+            checkSlotCount(slots);
+            Shelf target = shelves[shelfIndex];
+            target.lock.lock();
+            try {
+                if (slots < target.slots) {
+                    int occupied = nextMatching(target, slots, SlotFilter.OCCUPIED);
+                    if (occupied != -1) {
+                        throw new IllegalArgumentException("Cannot shrink shelf [" + shelf + "] to " + slots + " slots: slot [" + (occupied + 1)
+                                + "] is occupied by [" + tables.names.get(target.nameIds[occupied]) + "].");
+                    }
+                }
+                WriteAheadLog currentLog = log;
+                if (currentLog != null) {
+                    currentLog.logResize(shelfIndex, slots);
+                }
+                applyResize(target, slots);
+            } finally {
+                target.lock.unlock();
+            }
+        } finally {
+            record(OperationStats.Operation.RESIZE, start);
+        }
+    }
+
+    // ========== Inventory totals ==========
+    // Running totals are read without locks, so a report taken during changes may mix before and after values.
+
+    public long totalUnits() {
+        return totalUnits.sum();
+    }
+
+    /** Returns the sum of quantity times price over all products, in minor units. */
+    public long totalValue() {
+        return totalValue.sum();
+    }
+
+    public long lowStockCount() {
+        return lowStockCount.sum();
+    }
+
+    public long unitsOnShelf(int shelfIndex) {
+        return shelves[shelfIndex].units;
+    }
+
+    public long valueOnShelf(int shelfIndex) {
+        return shelves[shelfIndex].value;
+    }
+
+    public int lowStockOnShelf(int shelfIndex) {
+        return shelves[shelfIndex].lowStock;
+    }
+
+    public int lowStockThreshold() {
+        return lowStockThreshold;
+    }
+
+    /**
+     * Sets the quantity below which a product counts as low stock (0 turns
+     * low-stock tracking off) and recounts the low-stock totals.
+     */
+    public void setLowStockThreshold(int threshold) {
+        checkQuantity(threshold);
+        lockAllShelves();
+        try {
+            lowStockThreshold = threshold;
+            lowStockCount.reset();
+            for (Shelf shelf : shelves) {
+                int low = 0;
+                for (int w = 0; w < shelf.words(); w++) {
+                    for (long word = shelf.occupancy[w]; word != 0; word &= word - 1) {
+                        if (shelf.quantities[(w << 6) + Long.numberOfTrailingZeros(word)] < threshold) {
+                            low++;
+                        }
+                    }
+                }
+                shelf.lowStock = low;
+                lowStockCount.add(low);
+            }
+        } finally {
+            unlockAllShelves();
+        }
+    }
+
+    public void addLowStockListener(LowStockListener listener) {
+        lowStockListeners.add(listener);
+    }
+
+    /** Returns the 1-based numbers of shelves with at least one free slot. */
+    public int[] listAvailable() {
+        Shelf[] current = shelves;
+        int[] available = new int[current.length];
+        int count = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].freeSlots > 0) {
+                available[count++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(available, count);
+    }
+
+    /**
+     * Visits the retained history, oldest first, with each product's latest
+     * name. Changes made while it runs may or may not be visited.
+     */
+    public void readHistory(HistoryVisitor visitor) {
+        sweepLock.readLock().lock();
+        try {
+            history.forEach((time, productId, operation) -> visitor.visit(time, tables.names.get(registeredName(productId)), operation));
+        } finally {
+            sweepLock.readLock().unlock();
+        }
+    }
+
+    public boolean hasHistory() {
+        return !history.isEmpty();
+    }
+
+    // ========== Checks ==========
+    // Used by callers that prompt field by field; the operations repeat them atomically.
+
+    public int checkShelf(int shelf) {
+        int count = shelves.length;
+        if (shelf < 1 || shelf > count) {
+            throw new IllegalArgumentException("Invalid shelf number. Choose between 1 and " + count + ".");
+        }
+        return shelf - 1;
+    }
+
+    public void checkSlot(int shelf, int slot) {
+        slotOffset(shelves[checkShelf(shelf)], slot);
+    }
+
+    public void checkSlotFree(int shelf, int slot) {
+        int shelfIndex = checkShelf(shelf);
+        Shelf target = shelves[shelfIndex];
+        target.lock.lock();
+        try {
+            requireSlotFree(shelfIndex, target, slotOffset(target, slot));
+        } finally {
+            target.lock.unlock();
+        }
+    }
+
+    /** Returns the name of the product in a slot, or null when it is empty. */
+    public String occupant(int shelf, int slot) {
+        Shelf target = shelves[checkShelf(shelf)];
+        target.lock.lock();
+        try {
+            int offset = slotOffset(target, slot);
+            return target.occupied(offset) ? tables.names.get(target.nameIds[offset]) : null;
+        } finally {
+            target.lock.unlock();
+        }
+    }
+
+    /** Checks that a name is not empty and not used by another product. */
+    public void checkNewName(String name) {
+        checkName(name);
+        long existing = tables.index.get(name);
+        if (existing != NameIndex.ABSENT) {
+            throw duplicateName(name, existing);
+        }
+    }
+
+    /** Checks that {@code newName} can replace {@code name} without clashing with another product. */
+    public void checkRename(String name, String newName) {
+        if (newName.isEmpty()) {
+            throw new IllegalArgumentException("New product name cannot be empty.");
+        }
+        long existing = tables.index.get(newName);
+        if (existing != NameIndex.ABSENT && existing != tables.index.get(name)) {
+            throw duplicateName(newName, existing);
+        }
+    }
+
+    public static void checkQuantity(int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative.");
+        }
+    }
+
+    public static void checkPrice(long price) {
+        if (price < 0) {
+            throw new IllegalArgumentException("Price cannot be negative.");
+        }
+    }
+
+    /** Checks that quantity times price is small enough for the running inventory value never to overflow. */
+    public static void checkValue(int quantity, long price) {
+        if (price != 0 && quantity > MAX_PRODUCT_VALUE / price) {
+            throw new IllegalArgumentException("Quantity times price is too large.");
+        }
+    }
+
+    /** Converts a price entered in currency units to minor units. */
+    public static long toMinorUnits(double price) {
+        if (!Double.isFinite(price)) {
+            throw new IllegalArgumentException("Invalid price [" + price + "].");
+        }
+        if (price < 0) {
+            throw new IllegalArgumentException("Price cannot be negative.");
+        }
+        if (price * 100 >= Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Price is too large.");
+        }
+        return Math.round(price * 100);
+    }
+
+    // ========== Layout and read helpers ==========
+
+    public int shelfCount() {
+        return shelves.length;
+    }
+
+    public int slotsOnShelf(int shelfIndex) {
+        return shelves[shelfIndex].slots;
+    }
+
+    public int freeSlotsOnShelf(int shelfIndex) {
+        return shelves[shelfIndex].freeSlots;
+    }
+
+    public long totalSlots() {
+        return totalSlots.get();
+    }
+
+    public int productCount() {
+        return productCount.get();
+    }
+
+    public boolean isFull() {
+        return productCount.get() >= totalSlots.get();
+    }
+
+    public int matchingCount(int shelfIndex, SlotFilter filter) {
+        Shelf shelf = shelves[shelfIndex];
+        return switch (filter) {
+            case ALL -> shelf.slots;
+            case OCCUPIED -> shelf.slots - shelf.freeSlots;
+            case EMPTY -> shelf.freeSlots;
+        };
+    }
+
+    /**
+     * Copies up to {@code max} matching slots of a shelf, starting at slot
+     * offset {@code fromOffset}, into {@code offsets} and {@code slotNames}
+     * (null for empty slots). Returns the number copied.
+     */
+    public int collectSlots(int shelfIndex, int fromOffset, SlotFilter filter, int max, int[] offsets, String[] slotNames) {
+        Shelf shelf = shelves[shelfIndex];
+        shelf.lock.lock();
+        try {
+            int count = 0;
+            int offset = nextMatching(shelf, fromOffset, filter);
+            while (offset != -1 && count < max) {
+                offsets[count] = offset;
+                slotNames[count] = shelf.occupied(offset) ? tables.names.get(shelf.nameIds[offset]) : null;
+                count++;
+                offset = nextMatching(shelf, offset + 1, filter);
+            }
+            return count;
+        } finally {
+            shelf.lock.unlock();
+        }
+    }
+
+    /** Returns the slot offset of the n-th (0-based) matching slot on a shelf, or -1. */
+    public int selectMatching(int shelfIndex, int n, SlotFilter filter) {
+        Shelf shelf = shelves[shelfIndex];
+        shelf.lock.lock();
+        try {
+            for (int wordIndex = 0; wordIndex < shelf.words(); wordIndex++) {
+                long word = matchingWord(shelf, wordIndex, filter);
+                int count = Long.bitCount(word);
+                if (n < count) {
+                    for (; n > 0; n--) {
+                        word &= word - 1;
+                    }
+                    return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                }
+                n -= count;
+            }
+            return -1;
+        } finally {
+            shelf.lock.unlock();
+        }
+    }
+
+    /** Returns the first free slot (1-based) on a shelf, or -1 if it is full. */
+    public int findFirstFreeSlot(int shelfIndex) {
+        Shelf shelf = shelves[shelfIndex];
+        shelf.lock.lock();
+        try {
+            int offset = nextMatching(shelf, 0, SlotFilter.EMPTY);
+            return offset == -1 ? -1 : offset + 1;
+        } finally {
+            shelf.lock.unlock();
+        }
+    }
+
+    // ========== Persistence ==========
+
+    /** Writes a snapshot of the whole stock to {@code snapshotFile}, with every shelf locked, and starts the attached log afresh. */
+    public void checkpoint(Path snapshotFile) {
+        WriteAheadLog currentLog = log;
+        if (currentLog == null) {
+            return;
+        }
+        sweepLock.writeLock().lock();
+        lockAllShelves();
+        try {
+            sweep();
+            currentLog.commit();
+            int[] registry = new int[nextProductId.get()];
+            for (int productId = 0; productId < registry.length; productId++) {
+                registry[productId] = registeredName(productId);
+            }
+            Shelf[] current = shelves;
+            int[] slotsPerShelf = new int[current.length];
+            long[][] occupancy = new long[current.length][];
+            int[][] productIds = new int[current.length][];
+            int[][] quantities = new int[current.length][];
+            long[][] prices = new long[current.length][];
+            for (int i = 0; i < current.length; i++) {
+                slotsPerShelf[i] = current[i].slots;
+                occupancy[i] = current[i].occupancy;
+                productIds[i] = current[i].productIds;
+                quantities[i] = current[i].quantities;
+                prices[i] = current[i].prices;
+            }
+            new StockSnapshot(currentLog.lastSequence(), slotsPerShelf, occupancy, productIds, quantities, prices,
+                    tables.names, registry, history).writeTo(snapshotFile);
+            currentLog.reset();
+        } finally {
+            unlockAllShelves();
+            sweepLock.writeLock().unlock();
+        }
+    }
+
+    /** Returns a handler that applies replayed log records without re-logging them. */
+    public WriteAheadLog.Handler replayHandler() {
+        return new WriteAheadLog.Handler() {
+            @Override
+            public void insert(int shelfIndex, int offset, int productId, String name, int quantity, long price, long time) {
+                nextProductId.accumulateAndGet(productId + 1, Math::max);
+                int nameId = tables.names.add(name);
+                tables.index.put(nameId, slotRef(shelfIndex, offset));
+                applyInsert(shelfIndex, shelves[shelfIndex], offset, productId, nameId, quantity, price, time);
+            }
+
+            @Override
+            public void update(int shelfIndex, int offset, String name, int quantity, long price, long time) {
+                Shelf shelf = shelves[shelfIndex];
+                long ref = slotRef(shelfIndex, offset);
+                int nameId = shelf.nameIds[offset];
+                if (!tables.names.equals(nameId, name)) {
+                    tables.index.remove(nameId, ref);
+                    nameId = tables.names.add(name);
+                    tables.index.put(nameId, ref);
+                }
+                applyUpdate(shelfIndex, shelf, offset, nameId, quantity, price, time);
+            }
+
+            @Override
+            public void delete(int shelfIndex, int offset, long time) {
+                Shelf shelf = shelves[shelfIndex];
+                tables.index.remove(shelf.nameIds[offset], slotRef(shelfIndex, offset));
+                applyDelete(shelfIndex, shelf, offset, time);
+            }
+
+            @Override
+            public void resize(int shelfIndex, int slots) {
+                if (shelfIndex == shelves.length) {
+                    applyAddShelf(slots);
+                } else {
+                    applyResize(shelves[shelfIndex], slots);
+                }
+            }
+        };
+    }
+
+    // ========== Internals ==========
+    // The apply methods run under the shelf lock (or single-threaded during replay).
+
+    private void applyInsert(int shelfIndex, Shelf shelf, int offset, int productId, int nameId, int quantity, long price, long time) {
+        shelf.nameIds[offset] = nameId;
+        shelf.quantities[offset] = quantity;
+        shelf.prices[offset] = price;
+        shelf.productIds[offset] = productId;
+        addToIndexes(slotRef(shelfIndex, offset), nameId, quantity, price);
+        countStock(shelf, quantity, price, 1);
+        shelf.occupancy[offset >>> 6] |= 1L << offset;
+        shelf.freeSlots--;
+        productCount.incrementAndGet();
+        register(productId, nameId);
+        history.append(time, productId, HistoryLog.Operation.INSERT);
+    }
+
+    private void applyUpdate(int shelfIndex, Shelf shelf, int offset, int newNameId, int quantity, long price, long time) {
+        long ref = slotRef(shelfIndex, offset);
+        removeFromIndexes(ref, shelf.nameIds[offset], shelf.quantities[offset], shelf.prices[offset]);
+        countStock(shelf, shelf.quantities[offset], shelf.prices[offset], -1);
+        shelf.nameIds[offset] = newNameId;
+        shelf.quantities[offset] = quantity;
+        shelf.prices[offset] = price;
+        addToIndexes(ref, newNameId, quantity, price);
+        countStock(shelf, quantity, price, 1);
+        // History refers to the product id, so renaming only updates the registry
+        register(shelf.productIds[offset], newNameId);
+        history.append(time, shelf.productIds[offset], HistoryLog.Operation.UPDATE);
+    }
+
+    private void applyDelete(int shelfIndex, Shelf shelf, int offset, long time) {
+        removeFromIndexes(slotRef(shelfIndex, offset), shelf.nameIds[offset], shelf.quantities[offset], shelf.prices[offset]);
+        countStock(shelf, shelf.quantities[offset], shelf.prices[offset], -1);
+        shelf.quantities[offset] = 0;
+        shelf.prices[offset] = 0;
+        shelf.occupancy[offset >>> 6] &= ~(1L << offset);
+        shelf.freeSlots++;
+        productCount.decrementAndGet();
+        history.append(time, shelf.productIds[offset], HistoryLog.Operation.DELETE);
+    }
+
+    // Reuses an id freed by the last sweep if one is left, else takes a new one
+    private int newProductId() {
+        int[] free = freeProductIds;
+        if (nextFreeProductId.get() < free.length) {
+            int index = nextFreeProductId.getAndIncrement();
+            if (index < free.length) {
+                return free[index];
+            }
+        }
+        return nextProductId.getAndIncrement();
+    }
+
+    // Sweeps unless a sweep or history read is already running; the next insert past the threshold tries again
+    private void sweepIfDue() {
+        if (!sweepLock.writeLock().tryLock()) {
+            return;
+        }
+        try {
+            lockAllShelves();
+            try {
+                if (sweepDue()) {
+                    sweep();
+                }
+            } finally {
+                unlockAllShelves();
+            }
+        } finally {
+            sweepLock.writeLock().unlock();
+        }
+    }
+
+    private boolean sweepDue() {
+        return nextProductId.get() > sweepThreshold || tables.names.size() > namesThreshold;
+    }
+
+    // Frees the product ids no slot or retained history entry refers to, then compacts the name store; runs with every shelf locked
+    private void sweep() {
+        BitSet referenced = new BitSet(nextProductId.get());
+        for (Shelf shelf : shelves) {
+            for (int w = 0; w < shelf.words(); w++) {
+                for (long word = shelf.occupancy[w]; word != 0; word &= word - 1) {
+                    referenced.set(shelf.productIds[(w << 6) + Long.numberOfTrailingZeros(word)]);
+                }
+            }
+        }
+        for (int i = 0; i < history.size(); i++) {
+            referenced.set(history.productIdAt(i));
+        }
+        int end = referenced.length();
+        int inUse = referenced.cardinality();
+        int[] free = new int[end - inUse];
+        int count = 0;
+        for (int productId = referenced.nextClearBit(0); productId < end; productId = referenced.nextClearBit(productId + 1)) {
+            register(productId, -1);
+            free[count++] = productId;
+        }
+        freeProductIds = free;
+        nextFreeProductId.set(0);
+        nextProductId.set(end);
+        sweepThreshold = end + Math.max(MIN_IDS_BETWEEN_SWEEPS, inUse);
+        compactNames(end);
+    }
+
+    // Copies the names still referred to into a new store and moves the name indexes onto it with their ids mapped
+    private void compactNames(int productIdEnd) {
+        NameTables previous = tables;
+        NameStore compactedNames = new NameStore();
+        int[] newIds = new int[previous.names.size()];
+        Arrays.fill(newIds, -1);
+        for (int productId = 0; productId < productIdEnd; productId++) {
+            int nameId = registeredName(productId);
+            if (nameId != -1) {
+                register(productId, copyName(previous.names, compactedNames, newIds, nameId));
+            }
+        }
+        Shelf[] current = shelves;
+        for (int i = 0; i < current.length; i++) {
+            Shelf shelf = current[i];
+            for (int w = 0; w < shelf.words(); w++) {
+                for (long word = shelf.occupancy[w]; word != 0; word &= word - 1) {
+                    int offset = (w << 6) + Long.numberOfTrailingZeros(word);
+                    shelf.nameIds[offset] = copyName(previous.names, compactedNames, newIds, shelf.nameIds[offset]);
+                }
+            }
+        }
+        List<NameEntry> sorted = new ArrayList<>(indexesBuilt ? productCount.get() : 0);
+        if (indexesBuilt) {
+            for (NameEntry entry : previous.sorted.keySet()) {
+                sorted.add(new NameEntry(newIds[entry.nameId], entry.ref));
+            }
+        }
+        tables = new NameTables(compactedNames, previous.index.remapped(compactedNames, newIds), sorted);
+        namesThreshold = compactedNames.size() + Math.max(MIN_IDS_BETWEEN_SWEEPS, compactedNames.size());
+    }
+
+    private static int copyName(NameStore from, NameStore to, int[] newIds, int nameId) {
+        if (newIds[nameId] == -1) {
+            newIds[nameId] = to.add(from, nameId);
+        }
+        return newIds[nameId];
+    }
+
+    private int registeredName(int productId) {
+        return productNameIds[productId >>> REGISTRY_CHUNK_BITS][productId & REGISTRY_CHUNK_SIZE - 1];
+    }
+
+    // Each product id is written under the lock of the shelf holding it, so entries need no lock of their own
+    private void register(int productId, int nameId) {
+        int index = productId >>> REGISTRY_CHUNK_BITS;
+        int[][] chunks = productNameIds;
+        int[] chunk = index < chunks.length ? chunks[index] : null;
+        if (chunk == null) {
+            chunk = addRegistryChunk(index);
+        }
+        chunk[productId & REGISTRY_CHUNK_SIZE - 1] = nameId;
+    }
+
+    private int[] addRegistryChunk(int index) {
+        synchronized (registryGrowthLock) {
+            int[][] chunks = productNameIds;
+            if (index < chunks.length && chunks[index] != null) {
+                return chunks[index];
+            }
+            chunks = Arrays.copyOf(chunks, index < chunks.length ? chunks.length : Math.max(index + 1, chunks.length * 2));
+            int[] chunk = new int[REGISTRY_CHUNK_SIZE];
+            chunks[index] = chunk;
+            productNameIds = chunks;
+            return chunk;
+        }
+    }
+
+    // Runs under the layout lock (or during replay); only the array of shelf references is copied
+    private void applyAddShelf(int slots) {
+        Shelf[] grown = Arrays.copyOf(shelves, shelves.length + 1);
+        grown[grown.length - 1] = new Shelf(slots);
+        totalSlots.addAndGet(slots);
+        shelves = grown;
+    }
+
+    // Slots past the new end are empty when shrinking, so only the counts change
+    private void applyResize(Shelf shelf, int slots) {
+        shelf.ensureCapacity(slots);
+        int added = slots - shelf.slots;
+        shelf.freeSlots += added;
+        shelf.slots = slots;
+        totalSlots.addAndGet(added);
+    }
+
+    private void record(OperationStats.Operation operation, long startNanos) {
+        OperationStats currentStats = stats;
+        if (currentStats != null) {
+            currentStats.record(operation, System.nanoTime() - startNanos);
+        }
+    }
+
+    // Adds (sign 1) or takes away (sign -1) one product's units, value and low-stock count; checkValue keeps the sums from overflowing
+    private void countStock(Shelf shelf, int quantity, long price, int sign) {
+        long units = (long) sign * quantity;
+        long value = units * price;
+        shelf.units += units;
+        shelf.value += value;
+        totalUnits.add(units);
+        totalValue.add(value);
+        if (quantity < lowStockThreshold) {
+            shelf.lowStock += sign;
+            lowStockCount.add(sign);
+        }
+    }
+
+    // Fills the secondary indexes from the columns, inserting in key order so each skip list grows at its tail
+    private void buildIndexes() {
+        if (indexesBuilt) {
+            return;
+        }
+        lockAllShelves();
+        try {
+            if (indexesBuilt) {
+                return;
+            }
+            int count = productCount.get();
+            NameEntry[] byName = new NameEntry[count];
+            IndexEntry[] byQuantity = new IndexEntry[count];
+            IndexEntry[] byPrice = new IndexEntry[count];
+            int n = 0;
+            Shelf[] current = shelves;
+            for (int i = 0; i < current.length; i++) {
+                Shelf shelf = current[i];
+                for (int w = 0; w < shelf.words(); w++) {
+                    for (long word = shelf.occupancy[w]; word != 0; word &= word - 1) {
+                        int offset = (w << 6) + Long.numberOfTrailingZeros(word);
+                        long ref = slotRef(i, offset);
+                        byName[n] = new NameEntry(shelf.nameIds[offset], ref);
+                        byQuantity[n] = new IndexEntry(shelf.quantities[offset], ref);
+                        byPrice[n] = new IndexEntry(shelf.prices[offset], ref);
+                        n++;
+                    }
+                }
+            }
+            NameTables named = tables;
+            Arrays.sort(byName, (a, b) -> compareNames(named.names, a, b));
+            Arrays.sort(byQuantity);
+            Arrays.sort(byPrice);
+            tables = new NameTables(named.names, named.index, Arrays.asList(byName));
+            quantityIndex.addAll(Arrays.asList(byQuantity));
+            priceIndex.addAll(Arrays.asList(byPrice));
+            indexesBuilt = true;
+        } finally {
+            unlockAllShelves();
+        }
+    }
+
+    private void addToIndexes(long ref, int nameId, int quantity, long price) {
+        if (!indexesBuilt) {
+            return;
+        }
+        tables.sorted.put(new NameEntry(nameId, ref), Boolean.TRUE);
+        quantityIndex.add(new IndexEntry(quantity, ref));
+        priceIndex.add(new IndexEntry(price, ref));
+    }
+
+    private void removeFromIndexes(long ref, int nameId, int quantity, long price) {
+        if (!indexesBuilt) {
+            return;
+        }
+        tables.sorted.remove(new NameEntry(nameId, ref));
+        quantityIndex.remove(new IndexEntry(quantity, ref));
+        priceIndex.remove(new IndexEntry(price, ref));
+    }
+
+    // Reads a slot found through a secondary index; null if it was emptied, or renamed away from nameId (an id in indexedNames; -1 skips the check)
+    private StockItem readIndexed(long ref, NameStore indexedNames, int nameId) {
+        int shelfIndex = shelfOf(ref);
+        int offset = offsetOf(ref);
+        Shelf shelf = shelves[shelfIndex];
+        shelf.lock.lock();
+        try {
+            NameStore names = tables.names;
+            boolean current = shelf.occupied(offset) && (nameId == -1 || (indexedNames == names
+                    ? names.equalsIgnoreCase(shelf.nameIds[offset], nameId)
+                    : names.equalsIgnoreCase(shelf.nameIds[offset], indexedNames.get(nameId))));
+            return current ? itemAt(shelfIndex, shelf, offset) : null;
+        } finally {
+            shelf.lock.unlock();
+        }
+    }
+
+    private List<StockItem> findInRange(ConcurrentSkipListSet<IndexEntry> index, long min, long max, int limit, ToLongFunction<StockItem> value) {
+        long start = System.nanoTime();
+        try {
+            List<StockItem> found = new ArrayList<>();
+            if (min > max) {
+                return found;
+            }
+            buildIndexes();
+            for (IndexEntry entry : index.subSet(new IndexEntry(min, Long.MIN_VALUE), true, new IndexEntry(max, Long.MAX_VALUE), true)) {
+                if (found.size() >= limit) {
+                    break;
+                }
+                // The entry may be stale by the time the slot is read, so check the value again
+                StockItem item = readIndexed(entry.ref(), null, -1);
+                if (item != null && value.applyAsLong(item) >= min && value.applyAsLong(item) <= max) {
+                    found.add(item);
+                }
+            }
+            return found;
+        } finally {
+            record(OperationStats.Operation.SEARCH, start);
+        }
+    }
+
+    // The name store and the indexes keyed by its ids, replaced together when a sweep compacts the store
+    private static final class NameTables {
+        final NameStore names;
+        final NameIndex index; // name, ignoring case -> slot reference
+        final ConcurrentSkipListMap<NameEntry, Boolean> sorted; // sorted name index; only its keys matter
+
+        NameTables(NameStore names) {
+            this(names, new NameIndex(names), List.of());
+        }
+
+        // byName must already be in name order
+        NameTables(NameStore names, NameIndex index, List<NameEntry> byName) {
+            this.names = names;
+            this.index = index;
+            sorted = new ConcurrentSkipListMap<>(new SortedEntries(byName, (a, b) -> compareNames(names, a, b)));
+        }
+    }
+
+    // Entries already in name order, seen as a sorted map so ConcurrentSkipListMap builds from them without comparing names
+    private static final class SortedEntries extends AbstractMap<NameEntry, Boolean> implements SortedMap<NameEntry, Boolean> {
+        private final List<NameEntry> byName;
+        private final Comparator<NameEntry> comparator;
+
+        SortedEntries(List<NameEntry> byName, Comparator<NameEntry> comparator) {
+            this.byName = byName;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public Comparator<? super NameEntry> comparator() {
+            return comparator;
+        }
+
+        @Override
+        public Set<Entry<NameEntry, Boolean>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<NameEntry, Boolean>> iterator() {
+                    Iterator<NameEntry> entries = byName.iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext();
+                        }
+
+                        @Override
+                        public Entry<NameEntry, Boolean> next() {
+                            return new SimpleImmutableEntry<>(entries.next(), Boolean.TRUE);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return byName.size();
+                }
+            };
+        }
+
+        @Override
+        public SortedMap<NameEntry, Boolean> subMap(NameEntry fromKey, NameEntry toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<NameEntry, Boolean> headMap(NameEntry toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<NameEntry, Boolean> tailMap(NameEntry fromKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NameEntry firstKey() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NameEntry lastKey() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Entry of a quantity or price index, ordered by value and then by slot reference
+    private record IndexEntry(long value, long ref) implements Comparable<IndexEntry> {
+        @Override
+        public int compareTo(IndexEntry other) {
+            int byValue = Long.compare(value, other.value);
+            return byValue != 0 ? byValue : Long.compare(ref, other.ref);
+        }
+    }
+
+    // Entry of the sorted name index, ordered by name ignoring case and then by slot reference
+    private static class NameEntry {
+        final int nameId;
+        final long ref;
+
+        NameEntry(int nameId, long ref) {
+            this.nameId = nameId;
+            this.ref = ref;
+        }
+    }
+
+    // Search key for a prefix; sorts before every entry whose name is not below the prefix
+    private static final class Probe extends NameEntry {
+        final String prefix;
+
+        Probe(String prefix) {
+            super(-1, Long.MIN_VALUE);
+            this.prefix = prefix;
+        }
+    }
+
+    private static int compareNames(NameStore names, NameEntry a, NameEntry b) {
+        int byName;
+        if (a instanceof Probe probe) {
+            byName = -names.compareIgnoreCase(b.nameId, probe.prefix, false);
+        } else if (b instanceof Probe probe) {
+            byName = names.compareIgnoreCase(a.nameId, probe.prefix, false);
+        } else {
+            byName = names.compareIgnoreCase(a.nameId, b.nameId);
+        }
+        return byName != 0 ? byName : Long.compare(a.ref, b.ref);
+    }
+
+    private StockItem itemAt(int shelfIndex, Shelf shelf, int offset) {
+        return new StockItem(tables.names.get(shelf.nameIds[offset]), shelfIndex + 1, offset + 1, shelf.quantities[offset], shelf.prices[offset]);
+    }
+
+    // The layout lock keeps shelves from being added while all of them are held
+    private void lockAllShelves() {
+        layoutLock.lock();
+        for (Shelf shelf : shelves) {
+            shelf.lock.lock();
+        }
+    }
+
+    private void unlockAllShelves() {
+        Shelf[] current = shelves;
+        for (int i = current.length - 1; i >= 0; i--) {
+            current[i].lock.unlock();
+        }
+        layoutLock.unlock();
+    }
+
+    // Returns the id the name is stored under; retries if the product holding it goes away before it can be reported
+    private int claimName(String name, long ref) {
+        while (true) {
+            int nameId = tables.index.claim(name, ref);
+            if (nameId >= 0) {
+                return nameId;
+            }
+            long existing = tables.index.get(name);
+            if (existing != NameIndex.ABSENT) {
+                throw duplicateName(name, existing);
+            }
+        }
+    }
+
+    private static IllegalArgumentException duplicateName(String name, long existingRef) {
+        return new IllegalArgumentException("Product [" + name + "] already exists in shelf [" + (shelfOf(existingRef) + 1) + "], slot ["
+                + (offsetOf(existingRef) + 1) + "].");
+    }
+
+    private static void checkName(String name) {
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Product name cannot be empty.");
+        }
+    }
+
+    private static void checkSlotCount(int slots) {
+        if (slots <= 0) {
+            throw new IllegalArgumentException("Number of catalogues must be positive.");
+        }
+        if (slots > MAX_SLOTS_PER_SHELF) {
+            throw new IllegalArgumentException("Too many slots on one shelf.");
+        }
+    }
+
+    private static int slotOffset(Shelf shelf, int slot) {
+        int slots = shelf.slots;
+        if (slot < 1 || slot > slots) {
+            throw new IllegalArgumentException("Invalid slot number. Choose between 1 and " + slots + ".");
+        }
+        return slot - 1;
+    }
+
+    // True when the slot still holds the product with this name, ignoring case; offsets past a shrunk shelf's end are empty
+    private boolean holds(Shelf shelf, int offset, String name) {
+        return shelf.occupied(offset) && tables.names.equalsIgnoreCase(shelf.nameIds[offset], name);
+    }
+
+    private void requireSlotFree(int shelfIndex, Shelf shelf, int offset) {
+        if (shelf.occupied(offset)) {
+            String occupant = tables.names.get(shelf.nameIds[offset]);
+            int freeSlot = findFirstFreeSlot(shelfIndex);
+            throw new IllegalArgumentException("Slot [" + (offset + 1) + "] on shelf [" + (shelfIndex + 1)
+                    + "] is occupied by [" + occupant + "]." + (freeSlot == -1 ? " Shelf is full." : " First free slot: [" + freeSlot + "]."));
+        }
+    }
+
+    // A slot reference packs the shelf index into the high int and the slot offset into the low int
+    private static long slotRef(int shelfIndex, int offset) {
+        return (long) shelfIndex << 32 | offset;
+    }
+
+    private static int shelfOf(long ref) {
+        return (int) (ref >>> 32);
+    }
+
+    private static int offsetOf(long ref) {
+        return (int) ref;
+    }
+
+    // Bitmap word of matching slots; bits past the end of the shelf are cleared
+    private static long matchingWord(Shelf shelf, int wordIndex, SlotFilter filter) {
+        long word = switch (filter) {
+            case ALL -> -1L;
+            case OCCUPIED -> shelf.occupancy[wordIndex];
+            case EMPTY -> ~shelf.occupancy[wordIndex];
+        };
+        int remaining = shelf.slots - (wordIndex << 6);
+        return remaining >= 64 ? word : word & ((1L << remaining) - 1);
+    }
+
+    private static int nextMatching(Shelf shelf, int fromOffset, SlotFilter filter) {
+        int words = shelf.words();
+        int wordIndex = fromOffset >>> 6;
+        if (wordIndex >= words) {
+            return -1;
+        }
+        long word = matchingWord(shelf, wordIndex, filter) & (-1L << fromOffset);
+        while (word == 0) {
+            if (++wordIndex == words) {
+                return -1;
+            }
+            word = matchingWord(shelf, wordIndex, filter);
+        }
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+    }
+}
@@ -0,0 +1,8 @@
+package stock;
+
+/**
+ * A product as stored in one slot. Shelf and slot are 1-based and price is in
+ * minor units (cents).
+ */
+public record StockItem(String name, int shelf, int slot, int quantity, long price) {
+}
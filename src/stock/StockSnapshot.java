@@ -0,0 +1,213 @@
+package stock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Binary image of the whole stock: shelf layout, slot columns, product name
+ * registry and history. Snapshots are written and read through a memory-mapped
+ * file; {@code lastSequence} is the last write-ahead log record the image
+ * already contains, so replay can skip everything up to it.
+ * <p>
+ * Columns are held per shelf and may be longer than the shelf; only the first
+ * {@code slotsPerShelf[i]} entries are written. On disk the shelves' columns
+ * are laid end to end, as one flat column per field.
+ * <p>
+ * The registry is {@code productNameIds}, the id in {@code names} of each
+ * product's latest name, or -1 for a product id that is free. Only the
+ * products in use are written, as their id and latest name copied straight
+ * from the store's UTF-8 bytes, so free ids and names left unused by renames
+ * are dropped. A snapshot that was read back has a fresh store holding just
+ * those names.
+ */
+public record StockSnapshot(long lastSequence,
+                            int[] slotsPerShelf,
+                            long[][] shelfOccupancy,
+                            int[][] productIds,
+                            int[][] quantities,
+                            long[][] prices,
+                            NameStore names,
+                            int[] productNameIds,
+                            HistoryLog history) {
+
+    private static final int MAGIC = 0x53544b53; // "STKS"
+    private static final int VERSION = 1;
+
+    /**
+     * Writes the snapshot to a temporary file next to {@code file} and
+     * atomically moves it into place once it is fully on disk.
+     */
+    public void writeTo(Path file) {
+        int shelves = slotsPerShelf.length;
+        int[] shelfStartIndex = new int[shelves];
+        long totalSlots = 0;
+        for (int i = 0; i < shelves; i++) {
+            shelfStartIndex[i] = (int) totalSlots;
+            totalSlots += slotsPerShelf[i];
+        }
+        long size = 4 + 4 + 8 + 4 + 4 + 8L * shelves + 4L * totalSlots * 2 + 8L * totalSlots + 4 + 4 + 4L;
+        for (int slots : slotsPerShelf) {
+            size += 8L * ((slots + 63) >>> 6);
+        }
+        size += 4;
+        for (int nameId : productNameIds) {
+            size += nameId == -1 ? 0 : 8 + names.utf8Length(nameId);
+        }
+        size += 13L * history.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Stock snapshot of " + size + " bytes is too large to map.");
+        }
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(lastSequence).putInt(shelves).putInt((int) totalSlots);
+            putInts(buffer, slotsPerShelf, shelves);
+            putInts(buffer, shelfStartIndex, shelves);
+            for (int i = 0; i < shelves; i++) {
+                putLongs(buffer, shelfOccupancy[i], (slotsPerShelf[i] + 63) >>> 6);
+            }
+            for (int i = 0; i < shelves; i++) {
+                putInts(buffer, productIds[i], slotsPerShelf[i]);
+            }
+            for (int i = 0; i < shelves; i++) {
+                putInts(buffer, quantities[i], slotsPerShelf[i]);
+            }
+            for (int i = 0; i < shelves; i++) {
+                putLongs(buffer, prices[i], slotsPerShelf[i]);
+            }
+            int inUse = 0;
+            for (int nameId : productNameIds) {
+                inUse += nameId == -1 ? 0 : 1;
+            }
+            buffer.putInt(productNameIds.length).putInt(inUse);
+            for (int productId = 0; productId < productNameIds.length; productId++) {
+                int nameId = productNameIds[productId];
+                if (nameId != -1) {
+                    buffer.putInt(productId).putInt(names.utf8Length(nameId));
+                    names.copyUtf8(nameId, buffer);
+                }
+            }
+            buffer.putInt(history.size());
+            for (int i = 0; i < history.size(); i++) {
+                buffer.putLong(history.timeAt(i)).putInt(history.productIdAt(i)).put((byte) history.operationAt(i).ordinal());
+            }
+            buffer.putInt(checksum(buffer, (int) size - 4));
+            buffer.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write stock snapshot " + file, e);
+        }
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replace stock snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Maps {@code file} and decodes it. History entries beyond
+     * {@code historyRetention} are dropped oldest first.
+     */
+    public static StockSnapshot readFrom(Path file, int historyRetention) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 28 || size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Stock snapshot " + file + " has an invalid size of " + size + " bytes.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IllegalStateException("File " + file + " is not a stock snapshot.");
+            }
+            if (checksum(buffer, (int) size - 4) != buffer.getInt((int) size - 4)) {
+                throw new IllegalStateException("Stock snapshot " + file + " is corrupt (checksum mismatch).");
+            }
+            buffer.position(8);
+            long lastSequence = buffer.getLong();
+            int shelves = buffer.getInt();
+            buffer.getInt(); // total slots
+            int[] slotsPerShelf = getInts(buffer, shelves);
+            buffer.position(buffer.position() + 4 * shelves); // shelf start indexes follow from the slot counts
+            long[][] shelfOccupancy = new long[shelves][];
+            for (int i = 0; i < shelves; i++) {
+                shelfOccupancy[i] = getLongs(buffer, (slotsPerShelf[i] + 63) >>> 6);
+            }
+            int[][] productIds = new int[shelves][];
+            for (int i = 0; i < shelves; i++) {
+                productIds[i] = getInts(buffer, slotsPerShelf[i]);
+            }
+            int[][] quantities = new int[shelves][];
+            for (int i = 0; i < shelves; i++) {
+                quantities[i] = getInts(buffer, slotsPerShelf[i]);
+            }
+            long[][] prices = new long[shelves][];
+            for (int i = 0; i < shelves; i++) {
+                prices[i] = getLongs(buffer, slotsPerShelf[i]);
+            }
+            int[] productNameIds = new int[buffer.getInt()];
+            int inUse = buffer.getInt();
+            Arrays.fill(productNameIds, -1);
+            NameStore names = new NameStore();
+            byte[] scratch = new byte[64];
+            for (int i = 0; i < inUse; i++) {
+                int productId = buffer.getInt();
+                int length = buffer.getInt();
+                if (length > scratch.length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                buffer.get(scratch, 0, length);
+                productNameIds[productId] = names.add(scratch, 0, length);
+            }
+            int historySize = buffer.getInt();
+            HistoryLog history = new HistoryLog(historyRetention);
+            HistoryLog.Operation[] operations = HistoryLog.Operation.values();
+            for (int i = 0; i < historySize; i++) {
+                history.append(buffer.getLong(), buffer.getInt(), operations[buffer.get()]);
+            }
+            return new StockSnapshot(lastSequence, slotsPerShelf, shelfOccupancy,
+                    productIds, quantities, prices, names, productNameIds, history);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read stock snapshot " + file, e);
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(length));
+        return (int) crc.getValue();
+    }
+
+    // Bulk copies through typed views, then advance the byte buffer past them
+    private static void putInts(ByteBuffer buffer, int[] values, int count) {
+        buffer.asIntBuffer().put(values, 0, count);
+        buffer.position(buffer.position() + 4 * count);
+    }
+
+    private static void putLongs(ByteBuffer buffer, long[] values, int count) {
+        buffer.asLongBuffer().put(values, 0, count);
+        buffer.position(buffer.position() + 8 * count);
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * count);
+        return values;
+    }
+
+    private static long[] getLongs(ByteBuffer buffer, int count) {
+        long[] values = new long[count];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + 8 * count);
+        return values;
+    }
+}
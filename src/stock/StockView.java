@@ -0,0 +1,110 @@
+package stock;
+
+import java.io.PrintWriter;
+
+/**
+ * Text views of a stock's slots: the full listing, one page of a filtered
+ * shelf range, and the per-shelf occupancy summary. Slots are copied out of
+ * the engine a chunk at a time, so no shelf stays locked while text is built
+ * and the buffers do not grow with the shelf or page size.
+ */
+public final class StockView {
+    private static final int CHUNK_SLOTS = 1024;
+
+    private StockView() {
+    }
+
+    /** Prints every slot of every shelf, one line per shelf, naming occupied slots and numbering empty ones. */
+    public static void printAll(StockEngine stock, PrintWriter out) {
+        int[] offsets = new int[CHUNK_SLOTS];
+        String[] names = new String[offsets.length];
+        for (int i = 0; i < stock.shelfCount(); i++) {
+            out.print("Stock [");
+            out.print(i + 1);
+            out.print("] => ");
+            for (int from = 0; from < stock.slotsOnShelf(i); from += offsets.length) {
+                int count = stock.collectSlots(i, from, StockEngine.SlotFilter.ALL, offsets.length, offsets, names);
+                for (int j = 0; j < count; j++) {
+                    if (names[j] != null) {
+                        out.print("[ ");
+                        out.print(names[j]);
+                        out.print(" ] ");
+                    } else {
+                        out.print("[ ");
+                        out.print(offsets[j] + 1);
+                        out.print(" - EMPTY ] ");
+                    }
+                }
+            }
+            out.println();
+        }
+    }
+
+    /** Renders "Stock [N]: x/y occupied" lines for the 0-based shelf range, from the free-slot counters. */
+    public static void renderSummary(StockEngine stock, StringBuilder out, int fromShelf, int toShelf) {
+        out.setLength(0);
+        out.append("-------- Stock Summary --------\n");
+        long occupiedTotal = 0;
+        long slotsTotal = 0;
+        for (int i = fromShelf; i <= toShelf; i++) {
+            int occupied = stock.matchingCount(i, StockEngine.SlotFilter.OCCUPIED);
+            out.append("Stock [").append(i + 1).append("]: ").append(occupied).append('/').append(stock.slotsOnShelf(i)).append(" occupied\n");
+            occupiedTotal += occupied;
+            slotsTotal += stock.slotsOnShelf(i);
+        }
+        out.append("Total: ").append(occupiedTotal).append('/').append(slotsTotal).append(" occupied\n");
+    }
+
+    /** Returns the number of pages of {@code pageSize} matching slots in the 0-based shelf range. */
+    public static long countPages(StockEngine stock, int fromShelf, int toShelf, StockEngine.SlotFilter filter, int pageSize) {
+        long matching = 0;
+        for (int i = fromShelf; i <= toShelf; i++) {
+            matching += stock.matchingCount(i, filter);
+        }
+        return (matching + pageSize - 1) / pageSize;
+    }
+
+    /**
+     * Renders page {@code pageNumber} (1-based) of the matching slots in the
+     * 0-based shelf range into {@code out}, replacing its contents. Whole
+     * shelves before the page are skipped using the counters, not by
+     * visiting their slots.
+     */
+    public static void renderPage(StockEngine stock, StringBuilder out, int fromShelf, int toShelf, StockEngine.SlotFilter filter,
+                                  int pageSize, long pageNumber) {
+        out.setLength(0);
+        long skip = (pageNumber - 1) * pageSize;
+        int shelf = fromShelf;
+        while (shelf <= toShelf && stock.matchingCount(shelf, filter) <= skip) {
+            skip -= stock.matchingCount(shelf, filter);
+            shelf++;
+        }
+        int from = shelf > toShelf ? -1 : stock.selectMatching(shelf, (int) skip, filter);
+        int[] offsets = new int[Math.min(pageSize, CHUNK_SLOTS)];
+        String[] names = new String[offsets.length];
+        int rendered = 0;
+        while (rendered < pageSize && shelf <= toShelf) {
+            boolean started = false;
+            while (from != -1 && rendered < pageSize) {
+                int count = stock.collectSlots(shelf, from, filter, Math.min(pageSize - rendered, offsets.length), offsets, names);
+                if (count == 0) {
+                    break;
+                }
+                if (!started) {
+                    out.append("Stock [").append(shelf + 1).append("] => ");
+                    started = true;
+                }
+                for (int i = 0; i < count; i++) {
+                    out.append("[ ").append(offsets[i] + 1).append(" - ").append(names[i] != null ? names[i] : "EMPTY").append(" ] ");
+                }
+                rendered += count;
+                from = offsets[count - 1] + 1;
+            }
+            if (started) {
+                out.append('\n');
+            }
+            shelf++;
+            from = 0;
+        }
+    }
+}
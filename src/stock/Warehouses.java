@@ -0,0 +1,174 @@
+package stock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+/**
+ * Independent stock partitions, one per warehouse, in one process. Each
+ * warehouse is its own {@link StockEngine}, with its own shelf layout,
+ * history and log; the registry is all they share.
+ * <p>
+ * Queries over every warehouse fan out on a fork-join pool: the warehouses
+ * are split in halves until each task holds a few, every task queries its
+ * warehouses, and the results are merged in name order on the way back up.
+ * Tasks are cut to about {@value #TASKS_PER_WORKER} per worker, since one
+ * warehouse's query, an index lookup or a read of running totals, is too
+ * short to pay for a task of its own. With enough workers a cross-warehouse
+ * query then takes about as long as the slowest few warehouses, however many
+ * there are.
+ * <p>
+ * Warehouse names are matched ignoring case and keep the spelling they were
+ * first added with.
+ */
+public class Warehouses {
+    /** A product found in one warehouse. */
+    public record Located(String warehouse, StockItem item) {}
+
+    /** Running totals of one warehouse. */
+    public record Totals(int products, long slots, long units, long value, long lowStock) {
+        /** Adds two warehouses' totals together. */
+        public Totals plus(Totals other) {
+            return new Totals(products + other.products, slots + other.slots, units + other.units, value + other.value,
+                    lowStock + other.lowStock);
+        }
+    }
+
+    private static final int MAX_NAME_LENGTH = 64;
+    private static final int TASKS_PER_WORKER = 4;
+
+    private final ConcurrentSkipListMap<String, StockEngine> engines = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final ForkJoinPool pool;
+
+    public Warehouses() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public Warehouses(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Returns a warehouse's stock, or null when no warehouse has that name. */
+    public StockEngine get(String warehouse) {
+        return engines.get(warehouse);
+    }
+
+    /** Returns the spelling a warehouse was added with, or null when there is none by that name. */
+    public String nameOf(String warehouse) {
+        String name = engines.ceilingKey(warehouse);
+        return name != null && name.equalsIgnoreCase(warehouse) ? name : null;
+    }
+
+    /** Adds a warehouse, or replaces the stock of the warehouse with that name. */
+    public void put(String warehouse, StockEngine engine) {
+        checkName(warehouse);
+        engines.put(warehouse, engine);
+    }
+
+    /** Returns the warehouse names in order. */
+    public List<String> names() {
+        return new ArrayList<>(engines.keySet());
+    }
+
+    public int size() {
+        return engines.size();
+    }
+
+    /** Finds a product, by case-insensitive name, in every warehouse that stocks it. */
+    public List<Located> locate(String productName) {
+        return fanOut((warehouse, engine) -> {
+            StockItem item = engine.find(productName);
+            return item == null ? List.of() : List.of(new Located(warehouse, item));
+        }, (first, second) -> {
+            if (first.isEmpty() || second.isEmpty()) {
+                return first.isEmpty() ? second : first;
+            }
+            List<Located> both = new ArrayList<>(first);
+            both.addAll(second);
+            return both;
+        }, List.of());
+    }
+
+    /** Returns the running totals of every warehouse, in name order. */
+    public Map<String, Totals> totalsByWarehouse() {
+        return fanOut((warehouse, engine) -> {
+            Map<String, Totals> totals = new LinkedHashMap<>();
+            totals.put(warehouse, new Totals(engine.productCount(), engine.totalSlots(), engine.totalUnits(), engine.totalValue(),
+                    engine.lowStockCount()));
+            return totals;
+        }, (first, second) -> {
+            first.putAll(second);
+            return first;
+        }, new LinkedHashMap<>());
+    }
+
+    /** Checks that a warehouse name is usable, including as a directory name. */
+    public static void checkName(String warehouse) {
+        if (warehouse.isEmpty() || warehouse.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Warehouse name must be 1 to " + MAX_NAME_LENGTH + " characters long.");
+        }
+        for (int i = 0; i < warehouse.length(); i++) {
+            char c = warehouse.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || i > 0 && (c == '-' || c == '_'))) {
+                throw new IllegalArgumentException("Invalid warehouse name [" + warehouse + "]. Use letters, digits, '-' and '_', starting with a letter or digit.");
+            }
+        }
+    }
+
+    // Runs the query on a copy of the registry taken up front, so a warehouse added meanwhile is either fully in or left out
+    private <R> R fanOut(BiFunction<String, StockEngine, R> query, BinaryOperator<R> merge, R none) {
+        List<Map.Entry<String, StockEngine>> current = new ArrayList<>(engines.entrySet());
+        if (current.isEmpty()) {
+            return none;
+        }
+        int leafSize = Math.max(1, current.size() / (pool.getParallelism() * TASKS_PER_WORKER));
+        return pool.invoke(new FanOut<>(current, 0, current.size(), leafSize, query, merge));
+    }
+
+    // Queries warehouses [from, to): in turn when there are at most leafSize, otherwise the left half
+    // is forked and the right half runs in this task
+    private static final class FanOut<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Map.Entry<String, StockEngine>> warehouses;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final BiFunction<String, StockEngine, R> query;
+        private final BinaryOperator<R> merge;
+
+        FanOut(List<Map.Entry<String, StockEngine>> warehouses, int from, int to, int leafSize,
+               BiFunction<String, StockEngine, R> query, BinaryOperator<R> merge) {
+            this.warehouses = warehouses;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.query = query;
+            this.merge = merge;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= leafSize) {
+                R result = null;
+                for (int i = from; i < to; i++) {
+                    Map.Entry<String, StockEngine> warehouse = warehouses.get(i);
+                    R one = query.apply(warehouse.getKey(), warehouse.getValue());
+                    result = result == null ? one : merge.apply(result, one);
+                }
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            FanOut<R> left = new FanOut<>(warehouses, from, middle, leafSize, query, merge);
+            left.fork();
+            R right = new FanOut<>(warehouses, middle, to, leafSize, query, merge).compute();
+            return merge.apply(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package stock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of stock changes. Records are buffered by the log methods
+ * and made durable by {@link #commit()}, which writes every pending record
+ * and forces the file once, so a batch of changes costs a single sync.
+ * <p>
+ * Each record is framed as {@code [int length][int crc32][payload]}; the
+ * payload starts with a sequence number and the operation type. Replay stops
+ * at the first torn or corrupt record and cuts the file back to that point.
+ */
+public class WriteAheadLog implements Closeable {
+    /** Receives the records replayed by {@link #open}. */
+    public interface Handler {
+        void insert(int shelfIndex, int offset, int productId, String name, int quantity, long price, long time);
+
+        void update(int shelfIndex, int offset, String name, int quantity, long price, long time);
+
+        void delete(int shelfIndex, int offset, long time);
+
+        /** Sets a shelf's slot count; a shelf index one past the last shelf adds a shelf. */
+        void resize(int shelfIndex, int slots);
+    }
+
+    private static final byte INSERT = 4;
+    private static final byte UPDATE = 5;
+    private static final byte DELETE = 6;
+    private static final byte RESIZE = 7;
+    private static final int HEADER_BYTES = 8;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Object commitLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+    private ByteBuffer writing = ByteBuffer.allocate(4096);
+    private long nextSequence;
+    private int recordStart; // position in pending of the record being encoded
+
+    private WriteAheadLog(Path file, FileChannel channel, long nextSequence) {
+        this.file = file;
+        this.channel = channel;
+        this.nextSequence = nextSequence;
+    }
+
+    /**
+     * Opens the log at {@code file}, replays every record newer than
+     * {@code lastSequence} into {@code handler} and positions the log for
+     * appending after the last intact record.
+     */
+    public static WriteAheadLog open(Path file, long lastSequence, Handler handler) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IllegalStateException("Write-ahead log " + file + " is too large to replay.");
+            }
+            long sequence = lastSequence;
+            int validEnd = 0;
+            if (size > 0) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                CRC32 crc = new CRC32();
+                while (buffer.remaining() >= HEADER_BYTES) {
+                    int start = buffer.position();
+                    int length = buffer.getInt();
+                    int expectedCrc = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining()) {
+                        break; // torn tail
+                    }
+                    ByteBuffer payload = buffer.slice(buffer.position(), length);
+                    crc.reset();
+                    crc.update(payload.duplicate());
+                    if ((int) crc.getValue() != expectedCrc) {
+                        break;
+                    }
+                    long recordSequence = payload.getLong();
+                    if (recordSequence > lastSequence) {
+                        apply(payload, handler);
+                        sequence = recordSequence;
+                    }
+                    buffer.position(start + HEADER_BYTES + length);
+                    validEnd = buffer.position();
+                }
+            }
+            if (validEnd < size) {
+                channel.truncate(validEnd);
+                channel.force(true);
+            }
+            channel.position(validEnd);
+            return new WriteAheadLog(file, channel, sequence + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open write-ahead log " + file, e);
+        }
+    }
+
+    private static void apply(ByteBuffer payload, Handler handler) {
+        byte type = payload.get();
+        switch (type) {
+            case INSERT -> {
+                int shelfIndex = payload.getInt();
+                int offset = payload.getInt();
+                int productId = payload.getInt();
+                int quantity = payload.getInt();
+                long price = payload.getLong();
+                long time = payload.getLong();
+                handler.insert(shelfIndex, offset, productId, getString(payload), quantity, price, time);
+            }
+            case UPDATE -> {
+                int shelfIndex = payload.getInt();
+                int offset = payload.getInt();
+                int quantity = payload.getInt();
+                long price = payload.getLong();
+                long time = payload.getLong();
+                handler.update(shelfIndex, offset, getString(payload), quantity, price, time);
+            }
+            case DELETE -> {
+                int shelfIndex = payload.getInt();
+                int offset = payload.getInt();
+                handler.delete(shelfIndex, offset, payload.getLong());
+            }
+            case RESIZE -> {
+                int shelfIndex = payload.getInt();
+                handler.resize(shelfIndex, payload.getInt());
+            }
+            default -> throw new IllegalStateException("Unknown write-ahead log record type " + type + ".");
+        }
+    }
+
+    private static String getString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public synchronized void logInsert(int shelfIndex, int offset, int productId, String name, int quantity, long price, long time) {
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = beginRecord(INSERT, 4 + 4 + 4 + 4 + 8 + 8 + 4 + encodedName.length);
+        record.putInt(shelfIndex).putInt(offset).putInt(productId).putInt(quantity).putLong(price).putLong(time)
+                .putInt(encodedName.length).put(encodedName);
+        endRecord(record);
+    }
+
+    public synchronized void logUpdate(int shelfIndex, int offset, String name, int quantity, long price, long time) {
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = beginRecord(UPDATE, 4 + 4 + 4 + 8 + 8 + 4 + encodedName.length);
+        record.putInt(shelfIndex).putInt(offset).putInt(quantity).putLong(price).putLong(time)
+                .putInt(encodedName.length).put(encodedName);
+        endRecord(record);
+    }
+
+    public synchronized void logDelete(int shelfIndex, int offset, long time) {
+        ByteBuffer record = beginRecord(DELETE, 4 + 4 + 8);
+        record.putInt(shelfIndex).putInt(offset).putLong(time);
+        endRecord(record);
+    }
+
+    public synchronized void logResize(int shelfIndex, int slots) {
+        ByteBuffer record = beginRecord(RESIZE, 4 + 4);
+        record.putInt(shelfIndex).putInt(slots);
+        endRecord(record);
+    }
+
+    /**
+     * Writes all pending records and forces them to disk. Callers that arrive
+     * while another commit is syncing wait for it and then flush whatever
+     * accumulated in the meantime in a single write.
+     */
+    public void commit() {
+        synchronized (commitLock) {
+            ByteBuffer batch;
+            synchronized (this) {
+                if (pending.position() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = writing;
+                writing = batch;
+            }
+            batch.flip();
+            try {
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write to write-ahead log " + file, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /** Sequence number of the most recently logged record. */
+    public synchronized long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    /** Bytes currently on disk, excluding records not yet committed. */
+    public long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read size of write-ahead log " + file, e);
+        }
+    }
+
+    /**
+     * Discards the log contents after a snapshot has captured them. Sequence
+     * numbers keep increasing so stale records are still recognisable.
+     */
+    public void reset() {
+        synchronized (commitLock) {
+            synchronized (this) {
+                pending.clear();
+            }
+            try {
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not reset write-ahead log " + file, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            commit();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close write-ahead log " + file, e);
+            }
+        }
+    }
+
+    private ByteBuffer beginRecord(byte type, int bodyBytes) {
+        int payloadBytes = 8 + 1 + bodyBytes;
+        if (pending.remaining() < HEADER_BYTES + payloadBytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_BYTES + payloadBytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        recordStart = pending.position();
+        pending.putInt(payloadBytes).putInt(0); // crc is filled in by endRecord
+        pending.putLong(nextSequence++).put(type);
+        return pending;
+    }
+
+    private void endRecord(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.duplicate().position(recordStart + HEADER_BYTES).limit(record.position()));
+        record.putInt(recordStart + 4, (int) crc.getValue());
+    }
+}
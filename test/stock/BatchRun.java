@@ -0,0 +1,32 @@
+package stock;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the application in batch mode in a separate JVM, for tests of the
+ * console front end, which lives in the default package and keeps its state
+ * in statics. Line separators in the output are normalised to {@code \n}.
+ */
+record BatchRun(int exitCode, String output) {
+    static BatchRun of(Path directory, List<String> commands, String... jvmOptions) throws IOException, InterruptedException {
+        Path batchFile = directory.resolve("commands.txt");
+        Files.write(batchFile, commands, StandardCharsets.UTF_8);
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        List<String> command = new ArrayList<>(List.of(java.toString(), "-cp", System.getProperty("java.class.path")));
+        command.addAll(List.of(jvmOptions));
+        command.addAll(List.of("ConsoleStockManagementSystem", "--batch", batchFile.toString()));
+        Process process = new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (!process.waitFor(60, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Batch run did not finish: " + output);
+        }
+        return new BatchRun(process.exitValue(), output.replace(System.lineSeparator(), "\n"));
+    }
+}
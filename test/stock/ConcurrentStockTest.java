@@ -0,0 +1,79 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrentStockTest {
+    private static final int THREADS = 4;
+
+    private static void runAll(List<Thread> threads) throws InterruptedException {
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    void writersOnSeparateShelvesKeepCountsAndTotalsExact() throws InterruptedException {
+        StockEngine stock = new StockEngine(new int[] {16, 16, 16, 16}, 1000);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int shelf = t + 1;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    String name = "Shelf " + shelf + " product " + i;
+                    stock.insert(shelf, 1 + i % 16, name, 2, 100);
+                    stock.update(name, name + " renamed", 3, 100);
+                    stock.delete(name + " renamed");
+                }
+                stock.insert(shelf, 1, "Kept on shelf " + shelf, 5, 10);
+            }));
+        }
+
+        runAll(writers);
+
+        assertEquals(THREADS, stock.productCount());
+        assertEquals(THREADS * 5L, stock.totalUnits());
+        assertEquals(THREADS * 50L, stock.totalValue());
+        for (int i = 0; i < THREADS; i++) {
+            assertEquals(15, stock.freeSlotsOnShelf(i));
+            assertEquals(5, stock.unitsOnShelf(i));
+            assertNotNull(stock.find("kept on shelf " + (i + 1)));
+        }
+    }
+
+    @Test
+    void aNameRacedForFromEveryShelfIsTakenOnce() throws InterruptedException {
+        StockEngine stock = new StockEngine(new int[] {100, 100, 100, 100}, 1000);
+        AtomicInteger inserted = new AtomicInteger();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int shelf = t + 1;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    try {
+                        stock.insert(shelf, i + 1, (shelf % 2 == 0 ? "NAME " : "name ") + i, 1, 100);
+                        inserted.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        // Another shelf got the name first
+                    }
+                }
+            }));
+        }
+
+        runAll(writers);
+
+        assertEquals(100, inserted.get());
+        assertEquals(100, stock.productCount());
+        for (int i = 0; i < 100; i++) {
+            StockItem item = stock.find("Name " + i);
+            assertEquals(item.name(), stock.occupant(item.shelf(), item.slot()));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvImportTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void rejectsBadRowsOneByOneAndImportsTheRest() throws Exception {
+        Path csvFile = directory.resolve("stock.csv");
+        Files.write(csvFile, List.of(
+                "shelf,slot,name,quantity,price",
+                "1,1,Green Apple,10,2.50",
+                "1,2,\"Nuts, mixed\",5,4",
+                "",
+                "1,1,Taken slot,1,1",
+                "9,1,No shelf,1,1",
+                "1,3,green apple,1,1",
+                "1,4,Bad quantity,x,1",
+                "1,5,Too few",
+                "2,1,Kiwi,3,0.99"), StandardCharsets.UTF_8);
+
+        BatchRun run = BatchRun.of(directory, List.of(
+                "import,\"5,2\"," + csvFile,
+                "find,\"nuts, MIXED\"",
+                "find,kiwi"));
+
+        String output = run.output();
+        assertEquals(0, run.exitCode(), output);
+        assertTrue(output.contains("Line 5: Slot [1] on shelf [1] is occupied by [Green Apple]. First free slot: [3].\n"), output);
+        assertTrue(output.contains("Line 6: Invalid shelf number. Choose between 1 and 2.\n"), output);
+        assertTrue(output.contains("Line 7: Product [green apple] already exists in shelf [1], slot [1].\n"), output);
+        assertTrue(output.contains("Line 8: Invalid quantity [x].\n"), output);
+        assertTrue(output.contains("Line 9: Expected 5 columns (shelf,slot,name,quantity,price) but found 3.\n"), output);
+        assertTrue(output.contains("----- IMPORTED 3 PRODUCTS, REJECTED 5 ROWS IN "), output);
+        assertTrue(output.contains("Nuts, mixed"), output);
+        assertTrue(output.contains("Kiwi"), output);
+    }
+
+    @Test
+    void showsOnlyTheFirstRejectedRowsAndCountsTheRest() throws Exception {
+        Path csvFile = directory.resolve("stock.csv");
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 105; i++) {
+            rows.add("1,1,Row " + i + ",-1,1");
+        }
+        Files.write(csvFile, rows, StandardCharsets.UTF_8);
+
+        BatchRun run = BatchRun.of(directory, List.of("import,\"2\"," + csvFile));
+
+        String output = run.output();
+        assertTrue(output.contains("Line 1: Quantity cannot be negative.\n"), output);
+        assertTrue(output.contains("Line 100: Quantity cannot be negative.\n"), output);
+        assertFalse(output.contains("Line 101:"), output);
+        assertTrue(output.contains("... and 5 more rejected rows.\n"), output);
+        assertTrue(output.contains("----- IMPORTED 0 PRODUCTS, REJECTED 105 ROWS IN "), output);
+    }
+}
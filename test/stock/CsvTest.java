@@ -0,0 +1,58 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class CsvTest {
+    private static String[] split(String line, int capacity) {
+        String[] fields = new String[capacity];
+        int count = Csv.split(line, fields);
+        return Arrays.copyOf(fields, Math.min(count, capacity));
+    }
+
+    @Test
+    void splitsOnCommas() {
+        assertArrayEquals(new String[] {"1", "2", "Green Apple", "10", "2.50"}, split("1,2,Green Apple,10,2.50", 5));
+    }
+
+    @Test
+    void keepsCommasInsideQuotes() {
+        assertArrayEquals(new String[] {"1", "Nuts, mixed", "3"}, split("1,\"Nuts, mixed\",3", 5));
+        assertArrayEquals(new String[] {"import", "5,5,10", "stock.csv"}, split("import,\"5,5,10\",stock.csv", 5));
+    }
+
+    @Test
+    void readsADoubledQuoteAsOneQuote() {
+        assertArrayEquals(new String[] {"The \"Big\" One", "x"}, split("\"The \"\"Big\"\" One\",x", 5));
+    }
+
+    @Test
+    void ignoresTextBetweenAClosingQuoteAndTheNextComma() {
+        assertArrayEquals(new String[] {"a", "b"}, split("\"a\" trailing,b", 5));
+    }
+
+    @Test
+    void keepsEmptyFields() {
+        assertArrayEquals(new String[] {"", "", ""}, split(",,", 5));
+        assertArrayEquals(new String[] {"a", ""}, split("a,", 5));
+        assertArrayEquals(new String[] {""}, split("", 5));
+        assertArrayEquals(new String[] {"", "b"}, split("\"\",b", 5));
+    }
+
+    @Test
+    void takesAnUnterminatedQuoteToTheEndOfTheLine() {
+        assertArrayEquals(new String[] {"1", "open, quote"}, split("1,\"open, quote", 5));
+    }
+
+    @Test
+    void countsFieldsBeyondTheArray() {
+        String[] fields = new String[2];
+
+        assertEquals(4, Csv.split("a,b,c,d", fields));
+        assertArrayEquals(new String[] {"a", "b"}, fields);
+    }
+}
@@ -0,0 +1,171 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import stock.HistoryLog.Operation;
+
+class HistoryLogTest {
+    private static List<String> entries(HistoryLog history) {
+        List<String> entries = new ArrayList<>();
+        history.forEach((time, productId, operation) -> entries.add(time + " " + productId + " " + operation));
+        return entries;
+    }
+
+    @Test
+    void keepsEntriesInOrderUntilTheRetentionIsReached() {
+        HistoryLog history = new HistoryLog(3);
+        assertTrue(history.isEmpty());
+
+        history.append(10, 1, Operation.INSERT);
+        history.append(20, 1, Operation.UPDATE);
+
+        assertEquals(List.of("10 1 INSERT", "20 1 UPDATE"), entries(history));
+        assertEquals(2, history.size());
+    }
+
+    @Test
+    void dropsTheOldestEntriesOnceFull() {
+        HistoryLog history = new HistoryLog(3);
+        for (int i = 1; i <= 7; i++) {
+            history.append(i * 10, i, i % 2 == 0 ? Operation.DELETE : Operation.INSERT);
+        }
+
+        assertEquals(List.of("50 5 INSERT", "60 6 DELETE", "70 7 INSERT"), entries(history));
+        assertEquals(3, history.size());
+        assertEquals(50, history.timeAt(0));
+        assertEquals(7, history.productIdAt(2));
+        assertEquals(Operation.DELETE, history.operationAt(1));
+    }
+
+    @Test
+    void wrapsAcrossChunks() {
+        // More than one 4096-entry chunk, and not a multiple of it
+        int retention = 5000;
+        HistoryLog history = new HistoryLog(retention);
+        int appended = 12_345;
+        for (int i = 0; i < appended; i++) {
+            history.append(i, i, Operation.INSERT);
+        }
+
+        List<Integer> productIds = new ArrayList<>();
+        history.forEach((time, productId, operation) -> productIds.add(productId));
+        assertEquals(retention, productIds.size());
+        for (int i = 0; i < retention; i++) {
+            assertEquals(appended - retention + i, productIds.get(i));
+            assertEquals(appended - retention + i, history.productIdAt(i));
+        }
+    }
+
+    @Test
+    void rejectsPositionsOutsideTheRetainedEntries() {
+        HistoryLog history = new HistoryLog(2);
+        history.append(1, 1, Operation.INSERT);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> history.timeAt(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> history.productIdAt(-1));
+    }
+
+    @Test
+    void clearDropsEverythingAndStartsOver() {
+        HistoryLog history = new HistoryLog(2);
+        history.append(1, 1, Operation.INSERT);
+        history.append(2, 2, Operation.INSERT);
+        history.append(3, 3, Operation.INSERT);
+
+        history.clear();
+        history.append(4, 4, Operation.DELETE);
+
+        assertEquals(List.of("4 4 DELETE"), entries(history));
+    }
+
+    @Test
+    void rejectsANonPositiveRetention() {
+        assertThrows(IllegalArgumentException.class, () -> new HistoryLog(0));
+    }
+
+    // Each thread appends its own product id with times counting up, so its entries must come out in order
+    private static Thread[] appenders(HistoryLog history, int threads, int perThread) {
+        Thread[] appenders = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int productId = t;
+            appenders[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    history.append(i, productId, Operation.values()[i % 3]);
+                }
+            });
+        }
+        return appenders;
+    }
+
+    @Test
+    void concurrentAppendsAreAllKeptWhileTheyFit() throws InterruptedException {
+        int threads = 4;
+        int perThread = 20_000;
+        HistoryLog history = new HistoryLog(threads * perThread);
+        Thread[] appenders = appenders(history, threads, perThread);
+        for (Thread appender : appenders) {
+            appender.start();
+        }
+        for (Thread appender : appenders) {
+            appender.join();
+        }
+
+        long[] next = new long[threads];
+        history.forEach((time, productId, operation) -> {
+            assertEquals(next[productId]++, time);
+            assertEquals(Operation.values()[(int) (time % 3)], operation);
+        });
+        for (long count : next) {
+            assertEquals(perThread, count);
+        }
+    }
+
+    @Test
+    void readersSeeOnlyCompleteEntriesWhileTheRingWraps() throws InterruptedException {
+        int threads = 4;
+        int retention = 1000;
+        HistoryLog history = new HistoryLog(retention);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get() && failure.get() == null) {
+                long[] last = {-1, -1, -1, -1};
+                int[] seen = new int[1];
+                history.forEach((time, productId, operation) -> {
+                    seen[0]++;
+                    if (operation != Operation.values()[(int) (time % 3)] || time <= last[productId]) {
+                        failure.compareAndSet(null, "entry " + time + " " + productId + " " + operation + " after " + last[productId]);
+                    }
+                    last[productId] = time;
+                });
+                if (seen[0] > retention) {
+                    failure.compareAndSet(null, seen[0] + " entries visited");
+                }
+            }
+        });
+        reader.start();
+        Thread[] appenders = appenders(history, threads, 100_000);
+        for (Thread appender : appenders) {
+            appender.start();
+        }
+        for (Thread appender : appenders) {
+            appender.join();
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(retention, history.size());
+        assertEquals(retention, entries(history).size());
+    }
+}
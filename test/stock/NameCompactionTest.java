@@ -0,0 +1,81 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NameCompactionTest {
+    private static final int HISTORY_RETENTION = 10;
+    // Each rename stores a new name, so this many renames start several sweeps that compact the names
+    private static final int RENAMES = 20_000;
+
+    @TempDir
+    Path directory;
+
+    private static List<String> history(StockEngine stock) {
+        List<String> entries = new ArrayList<>();
+        stock.readHistory((time, name, operation) -> entries.add(operation.label() + " " + name));
+        return entries;
+    }
+
+    private static List<String> names(List<StockItem> items) {
+        List<String> names = new ArrayList<>();
+        for (StockItem item : items) {
+            names.add(item.name());
+        }
+        return names;
+    }
+
+    private static StockEngine renamedStock() {
+        StockEngine stock = new StockEngine(new int[] {4, 4}, HISTORY_RETENTION);
+        stock.insert(1, 1, "Apple", 5, 100);
+        stock.insert(2, 3, "Apricot", 7, 200);
+        stock.insert(1, 2, "Spinner 0", 1, 100);
+        // Build the sorted name index first, so the sweeps have to remap it too
+        stock.findByPrefix("", 10);
+        for (int i = 1; i <= RENAMES; i++) {
+            stock.update("Spinner " + (i - 1), "Spinner " + i, 1, 100);
+        }
+        return stock;
+    }
+
+    @Test
+    void namesSurviveCompaction() {
+        StockEngine stock = renamedStock();
+
+        assertEquals(new StockItem("Apple", 1, 1, 5, 100), stock.find("APPLE"));
+        assertEquals(new StockItem("Spinner " + RENAMES, 1, 2, 1, 100), stock.find("spinner " + RENAMES));
+        assertNull(stock.find("Spinner " + (RENAMES - 1)));
+        assertEquals(List.of("Apple", "Apricot"), names(stock.findByPrefix("ap", 10)));
+        assertEquals(List.of("Spinner " + RENAMES), names(stock.findByPrefix("spinner", 10)));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = RENAMES - HISTORY_RETENTION + 1; i <= RENAMES; i++) {
+            expected.add("Updated Spinner " + RENAMES);
+        }
+        assertEquals(expected, history(stock));
+    }
+
+    @Test
+    void compactedNamesAreAllASnapshotHolds() {
+        StockEngine stock = renamedStock();
+        Path snapshotFile = directory.resolve("stock.snapshot");
+        try (WriteAheadLog log = WriteAheadLog.open(directory.resolve("stock.wal"), 0, stock.replayHandler())) {
+            stock.attachLog(log);
+            stock.checkpoint(snapshotFile);
+        }
+
+        StockSnapshot snapshot = StockSnapshot.readFrom(snapshotFile, HISTORY_RETENTION);
+        assertTrue(snapshot.names().size() <= 3 + HISTORY_RETENTION, snapshot.names().size() + " names");
+        StockEngine restored = StockEngine.restore(snapshot);
+        assertEquals(stock.find("Spinner " + RENAMES), restored.find("Spinner " + RENAMES));
+        assertEquals(history(stock), history(restored));
+    }
+}
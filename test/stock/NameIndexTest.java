@@ -0,0 +1,165 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class NameIndexTest {
+    private final NameStore names = new NameStore();
+    private final NameIndex index = new NameIndex(names);
+
+    // "a@" and "b!" fold to the same hash (97 * 31 + 64 == 98 * 31 + 33), so any names built from
+    // the same number of these blocks collide completely and share one probe run
+    private static List<String> collidingNames(int blocks) {
+        List<String> colliding = new ArrayList<>();
+        for (int bits = 0; bits < 1 << blocks; bits++) {
+            StringBuilder name = new StringBuilder();
+            for (int block = 0; block < blocks; block++) {
+                name.append((bits >>> block & 1) == 0 ? "a@" : "b!");
+            }
+            colliding.add(name.toString());
+        }
+        return colliding;
+    }
+
+    @Test
+    void collidingNamesShareOneHash() {
+        List<String> colliding = collidingNames(3);
+        for (String name : colliding) {
+            assertEquals(NameStore.foldedHash(colliding.get(0)), NameStore.foldedHash(name));
+        }
+    }
+
+    @Test
+    void removingFromTheMiddleOfAChainKeepsLaterEntriesReachable() {
+        List<String> chain = collidingNames(3);
+        int[] ids = new int[chain.size()];
+        for (int i = 0; i < chain.size(); i++) {
+            ids[i] = index.claim(chain.get(i), i);
+        }
+
+        index.remove(ids[0], 0);
+        index.remove(ids[3], 3);
+        index.remove(ids[6], 6);
+
+        for (int i = 0; i < chain.size(); i++) {
+            assertEquals(i % 3 == 0 ? NameIndex.ABSENT : i, index.get(chain.get(i)), chain.get(i));
+            assertEquals(i % 3 == 0 ? NameIndex.ABSENT : i, index.get(chain.get(i).toUpperCase()), chain.get(i));
+        }
+    }
+
+    @Test
+    void reinsertingIntoAChainAfterRemovalsFindsEveryEntry() {
+        List<String> chain = collidingNames(3);
+        int[] ids = new int[chain.size()];
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < chain.size(); i++) {
+                ids[i] = index.claim(chain.get(i), round * 100L + i);
+                assertNotEquals(-1, ids[i], chain.get(i));
+            }
+            // Remove every other entry, last first, then put them back in the opposite order
+            for (int i = chain.size() - 1; i >= 0; i -= 2) {
+                index.remove(ids[i], round * 100L + i);
+            }
+            for (int i = 1; i < chain.size(); i += 2) {
+                assertEquals(NameIndex.ABSENT, index.get(chain.get(i)));
+                ids[i] = index.claim(chain.get(i), round * 100L + i);
+            }
+            for (int i = 0; i < chain.size(); i++) {
+                assertEquals(round * 100L + i, index.get(chain.get(i)), chain.get(i));
+            }
+            for (int i = 0; i < chain.size(); i++) {
+                index.remove(ids[i], round * 100L + i);
+            }
+            for (String name : chain) {
+                assertEquals(NameIndex.ABSENT, index.get(name), name);
+            }
+        }
+    }
+
+    @Test
+    void claimRefusesANameTakenInAnyCase() {
+        assertNotEquals(-1, index.claim("Green Apple", 1));
+        assertEquals(-1, index.claim("GREEN apple", 2));
+        assertEquals(1, index.get("green APPLE"));
+    }
+
+    @Test
+    void removeLeavesAnEntryThatMovedToAnotherRef() {
+        int id = index.claim("Fig", 1);
+        index.put(id, 2);
+
+        index.remove(id, 1);
+
+        assertEquals(2, index.get("Fig"));
+    }
+
+    @Test
+    void remappedIndexFindsTheNamesCopiedIntoANewStore() {
+        List<String> chain = collidingNames(3);
+        int[] ids = new int[chain.size()];
+        for (int i = 0; i < chain.size(); i++) {
+            ids[i] = index.claim(chain.get(i), i);
+        }
+        index.claim("Fig", 100);
+        index.remove(ids[2], 2);
+        index.remove(ids[5], 5);
+
+        // Copy only the names still indexed, in reverse, so every id changes
+        NameStore compacted = new NameStore();
+        int[] newIds = new int[names.size()];
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            newIds[ids[i]] = i == 2 || i == 5 ? -1 : compacted.add(names, ids[i]);
+        }
+        newIds[names.size() - 1] = compacted.add(names, names.size() - 1);
+        NameIndex copy = index.remapped(compacted, newIds);
+
+        for (int i = 0; i < chain.size(); i++) {
+            assertEquals(i == 2 || i == 5 ? NameIndex.ABSENT : i, copy.get(chain.get(i).toUpperCase()), chain.get(i));
+        }
+        assertEquals(100, copy.get("fig"));
+        assertEquals(-1, copy.claim(chain.get(0), 200));
+        int reclaimed = copy.claim(chain.get(2), 202);
+        assertEquals(chain.get(2), compacted.get(reclaimed));
+        assertEquals(202, copy.get(chain.get(2)));
+        copy.remove(newIds[ids[0]], 0);
+        assertEquals(NameIndex.ABSENT, copy.get(chain.get(0)));
+        assertEquals(0, index.get(chain.get(0)));
+    }
+
+    @Test
+    void matchesAModelThroughRandomRemovalsAndReinsertions() {
+        Random random = new Random(42);
+        Map<String, Long> expected = new HashMap<>();
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> pool = new ArrayList<>(collidingNames(4));
+        for (int i = 0; i < 2000; i++) {
+            pool.add("Product " + i);
+        }
+        for (int step = 0; step < 50_000; step++) {
+            String name = pool.get(random.nextInt(pool.size()));
+            if (expected.containsKey(name)) {
+                index.remove(ids.remove(name), expected.remove(name));
+            } else {
+                long ref = step;
+                ids.put(name, index.claim(name, ref));
+                expected.put(name, ref);
+            }
+            if (step % 5000 == 0) {
+                for (String checked : pool) {
+                    assertEquals(expected.getOrDefault(checked, NameIndex.ABSENT), index.get(checked), checked);
+                }
+            }
+        }
+        for (String checked : pool) {
+            assertEquals(expected.getOrDefault(checked, NameIndex.ABSENT), index.get(checked), checked);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class NameLookupTest {
+    private final StockEngine stock = new StockEngine(new int[] {4, 4}, 100);
+
+    @Test
+    void findsAProductByItsNameInAnyCase() {
+        stock.insert(1, 2, "Green Apple", 5, 100);
+
+        StockItem expected = new StockItem("Green Apple", 1, 2, 5, 100);
+        assertEquals(expected, stock.find("Green Apple"));
+        assertEquals(expected, stock.find("green apple"));
+        assertEquals(expected, stock.find("GREEN APPLE"));
+        assertNull(stock.find("Green Apples"));
+        assertNull(stock.find("Green"));
+    }
+
+    @Test
+    void foldsCaseBeyondAscii() {
+        stock.insert(1, 1, "Äpfel", 1, 100);
+        stock.insert(1, 2, "café 🍰", 1, 100);
+
+        assertEquals("Äpfel", stock.find("äPFEL").name());
+        assertEquals("café 🍰", stock.find("CAFÉ 🍰").name());
+        assertNull(stock.find("cafe 🍰"));
+    }
+
+    @Test
+    void rejectsANameTakenInAnotherCaseOnAnyShelf() {
+        stock.insert(1, 1, "Fig", 1, 100);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> stock.insert(2, 3, "FIG", 1, 100));
+        assertEquals("Product [FIG] already exists in shelf [1], slot [1].", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> stock.checkNewName("fig"));
+        assertEquals(1, stock.productCount());
+    }
+
+    @Test
+    void renamingOnlyTheCaseKeepsTheProductFindable() {
+        stock.insert(1, 1, "kiwi", 1, 100);
+
+        stock.update("KIWI", "Kiwi", 2, 100);
+
+        assertEquals(new StockItem("Kiwi", 1, 1, 2, 100), stock.find("kiwi"));
+        stock.checkRename("kiwi", "KIWI");
+    }
+
+    @Test
+    void renamingFreesTheOldNameAndDeletingFreesTheNewOne() {
+        stock.insert(1, 1, "Plum", 1, 100);
+        stock.insert(1, 2, "Pear", 1, 100);
+        assertThrows(IllegalArgumentException.class, () -> stock.update("plum", "PEAR", 1, 100));
+
+        stock.update("plum", "Prune", 1, 100);
+        assertNull(stock.find("Plum"));
+        stock.insert(2, 1, "PLUM", 3, 100);
+        stock.delete("prune");
+
+        assertNull(stock.find("Prune"));
+        assertEquals(new StockItem("PLUM", 2, 1, 3, 100), stock.find("plum"));
+        assertNull(stock.delete("prune"));
+    }
+}
@@ -0,0 +1,69 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.junit.jupiter.api.Test;
+
+class NameStoreTest {
+    @Test
+    void concurrentAddsGetDistinctIdsAndKeepTheirBytes() throws InterruptedException {
+        NameStore names = new NameStore();
+        int threads = 4;
+        int perThread = 50_000;
+        ConcurrentMap<Integer, String> added = new ConcurrentHashMap<>();
+        List<Thread> adders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            adders.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    // Lengths vary so pages fill at uneven points and adds race to start the next one
+                    String name = "Thread " + thread + " name " + i + "x".repeat(i % 97);
+                    added.put(names.add(name), name);
+                }
+            }));
+        }
+        adders.forEach(Thread::start);
+        for (Thread adder : adders) {
+            adder.join();
+        }
+
+        assertEquals(threads * perThread, names.size());
+        assertEquals(threads * perThread, added.size());
+        for (int id = 0; id < names.size(); id++) {
+            String name = added.get(id);
+            assertEquals(name, names.get(id));
+            assertEquals(NameStore.foldedHash(name), names.foldedHash(id));
+        }
+    }
+
+    @Test
+    void concurrentLargeNamesGetPagesOfTheirOwn() throws InterruptedException {
+        NameStore names = new NameStore();
+        ConcurrentMap<Integer, String> added = new ConcurrentHashMap<>();
+        List<Thread> adders = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            adders.add(new Thread(() -> {
+                for (int i = 0; i < 20; i++) {
+                    // Over a quarter of a page, between small names that share pages
+                    String large = String.valueOf((char) ('a' + thread)).repeat(300_000 + i);
+                    added.put(names.add(large), large);
+                    String small = "small " + thread + " " + i;
+                    added.put(names.add(small), small);
+                }
+            }));
+        }
+        adders.forEach(Thread::start);
+        for (Thread adder : adders) {
+            adder.join();
+        }
+
+        assertEquals(added.size(), names.size());
+        added.forEach((id, name) -> assertEquals(name, names.get(id)));
+    }
+}
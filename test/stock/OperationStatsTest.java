@@ -0,0 +1,102 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import stock.OperationStats.Operation;
+
+class OperationStatsTest {
+    private final OperationStats stats = new OperationStats();
+
+    @Test
+    void anOperationNeverRecordedIsAllZero() {
+        OperationSummary summary = stats.summary(Operation.FIND);
+
+        assertEquals("find", summary.getOperation());
+        assertEquals(0, summary.getCount());
+        assertEquals(0, summary.getMeanNanos());
+        assertEquals(0, summary.getP50Nanos());
+        assertEquals(0, summary.getP99Nanos());
+        assertEquals(0, summary.getMaxNanos());
+    }
+
+    @Test
+    void smallLatenciesAreExact() {
+        for (long nanos = 0; nanos < 8; nanos++) {
+            stats.record(Operation.INSERT, nanos);
+        }
+        stats.record(Operation.INSERT, -5); // counted as 0
+
+        OperationSummary summary = stats.summary(Operation.INSERT);
+        assertEquals(9, summary.getCount());
+        assertEquals(3, summary.getMeanNanos());
+        assertEquals(3, summary.getP50Nanos());
+        assertEquals(7, summary.getP90Nanos());
+        assertEquals(7, summary.getMaxNanos());
+    }
+
+    @Test
+    void percentilesReportTheTopOfTheirBucketCappedAtTheMaximum() {
+        for (long nanos = 1; nanos <= 100; nanos++) {
+            stats.record(Operation.UPDATE, nanos);
+        }
+
+        OperationSummary summary = stats.summary(Operation.UPDATE);
+        assertEquals(100, summary.getCount());
+        assertEquals(50, summary.getMeanNanos());
+        assertEquals(51, summary.getP50Nanos()); // 50 is in [48, 51], buckets of 4 between 32 and 63
+        assertEquals(95, summary.getP90Nanos()); // 90 is in [88, 95], buckets of 8 between 64 and 127
+        assertEquals(100, summary.getP99Nanos()); // 99 is in [96, 103], past the maximum
+        assertEquals(100, summary.getMaxNanos());
+    }
+
+    @Test
+    void percentilesAreAtMostAnEighthAboveTheTrueValue() {
+        Random random = new Random(42);
+        long[] latencies = new long[10_000];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = (long) Math.exp(random.nextDouble() * 30);
+            stats.record(Operation.SEARCH, latencies[i]);
+        }
+        Arrays.sort(latencies);
+
+        OperationSummary summary = stats.summary(Operation.SEARCH);
+        long[] reported = {summary.getP50Nanos(), summary.getP90Nanos(), summary.getP99Nanos()};
+        double[] fractions = {0.50, 0.90, 0.99};
+        for (int i = 0; i < fractions.length; i++) {
+            long exact = latencies[(int) Math.ceil(latencies.length * fractions[i]) - 1];
+            assertTrue(reported[i] >= exact && reported[i] <= exact + exact / 8, fractions[i] + ": " + reported[i] + " for " + exact);
+        }
+        assertEquals(latencies[latencies.length - 1], summary.getMaxNanos());
+    }
+
+    @Test
+    void theLargestLatencyLandsInTheLastBucket() {
+        stats.record(Operation.IMPORT, 1_000_000);
+        stats.record(Operation.IMPORT, Long.MAX_VALUE);
+
+        OperationSummary summary = stats.summary(Operation.IMPORT);
+        assertEquals(1_048_575, summary.getP50Nanos());
+        assertEquals(Long.MAX_VALUE, summary.getP99Nanos());
+        assertEquals(Long.MAX_VALUE, summary.getMaxNanos());
+    }
+
+    @Test
+    void resetClearsEveryOperation() {
+        stats.record(Operation.FIND, 10);
+        stats.record(Operation.DELETE, 20);
+        assertEquals(2, stats.getTotalCount());
+        assertEquals(1, stats.summary(Operation.DELETE).getCount());
+
+        stats.reset();
+
+        assertEquals(0, stats.getTotalCount());
+        assertEquals(0, stats.summary(Operation.DELETE).getMaxNanos());
+        assertEquals(Operation.values().length, stats.getOperations().size());
+    }
+}
@@ -0,0 +1,72 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProductIdSweepTest {
+    private static final int HISTORY_RETENTION = 10;
+    private static final int CYCLES = 20_000;
+
+    @TempDir
+    Path directory;
+
+    private static List<String> history(StockEngine stock) {
+        List<String> entries = new ArrayList<>();
+        stock.readHistory((time, name, operation) -> entries.add(operation.label() + " " + name));
+        return entries;
+    }
+
+    // Inserts and deletes a new product per cycle, so every id but the ones in the last history entries goes unused
+    private static StockEngine churn() {
+        StockEngine stock = new StockEngine(new int[] {4}, HISTORY_RETENTION);
+        stock.insert(1, 1, "Keeper", 1, 100);
+        for (int i = 0; i < CYCLES; i++) {
+            stock.insert(1, 2, "Product " + i, 1, 100);
+            stock.delete("Product " + i);
+        }
+        return stock;
+    }
+
+    @Test
+    void historyKeepsTheRightNamesWhileIdsAreReused() {
+        StockEngine stock = churn();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = CYCLES - HISTORY_RETENTION / 2; i < CYCLES; i++) {
+            expected.add("Inserted Product " + i);
+            expected.add("Deleted Product " + i);
+        }
+        assertEquals(expected, history(stock));
+        assertEquals(new StockItem("Keeper", 1, 1, 1, 100), stock.find("keeper"));
+    }
+
+    @Test
+    void snapshotHoldsOnlyProductsStillReferred() {
+        StockEngine stock = churn();
+        Path snapshotFile = directory.resolve("stock.snapshot");
+        try (WriteAheadLog log = WriteAheadLog.open(directory.resolve("stock.wal"), 0, stock.replayHandler())) {
+            stock.attachLog(log);
+            stock.checkpoint(snapshotFile);
+        }
+
+        StockSnapshot snapshot = StockSnapshot.readFrom(snapshotFile, HISTORY_RETENTION);
+        int inUse = 0;
+        for (int nameId : snapshot.productNameIds()) {
+            inUse += nameId == -1 ? 0 : 1;
+        }
+        // Keeper, and the five products in the retained history
+        assertEquals(1 + HISTORY_RETENTION / 2, inUse);
+        assertTrue(snapshot.productNameIds().length < CYCLES / 2, "registry of " + snapshot.productNameIds().length + " ids");
+        assertEquals(1 + HISTORY_RETENTION / 2, snapshot.names().size());
+
+        StockEngine restored = StockEngine.restore(snapshot);
+        assertEquals(history(stock), history(restored));
+    }
+}
@@ -0,0 +1,103 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ServerModeTest {
+    private static final Pattern PORT = Pattern.compile("Serving stock on .*:(\\d+) ");
+
+    @TempDir
+    Path directory;
+
+    private Process server;
+    private Socket socket;
+    private BufferedReader in;
+    private PrintWriter out;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        Path dataDirectory = Files.createDirectory(directory.resolve("data"));
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        server = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                "-Dstock.data.dir=" + dataDirectory, "-Dstock.server.maxSlots=1000", "ConsoleStockManagementSystem", "--server", "0")
+                .directory(directory.toFile()).redirectErrorStream(true).start();
+        BufferedReader console = new BufferedReader(new InputStreamReader(server.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        Matcher port = null;
+        while (port == null && (line = console.readLine()) != null) {
+            Matcher matcher = PORT.matcher(line);
+            port = matcher.find() ? matcher : null;
+        }
+        assertTrue(port != null, "server did not start");
+        socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(port.group(1)));
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void stopServer() throws IOException, InterruptedException {
+        if (socket != null) {
+            socket.close();
+        }
+        server.destroy();
+        server.waitFor();
+    }
+
+    private String send(String command) throws IOException {
+        out.println(command);
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(".")) {
+            response.append(line).append('\n');
+        }
+        return response.toString();
+    }
+
+    @Test
+    void capsTheSlotsAClientCanAskFor() throws IOException {
+        assertEquals("Error: Too many catalogues: the server allows at most 1000 per warehouse.\n", send("setup,600,600"));
+        assertEquals("Stock set up with 900 slots across 2 stocks.\n", send("setup,600,300"));
+        assertEquals("Error: Too many catalogues: the server allows at most 1000 per warehouse.\n", send("addstock,101"));
+        assertEquals("Stock [3] added with 100 slots.\n", send("addstock,100"));
+        assertEquals("Error: Too many catalogues: the server allows at most 1000 per warehouse.\n", send("resize,2,301"));
+        assertEquals("Stock [2] resized to 50 slots.\n", send("resize,2,50"));
+        assertEquals("Error: Too many catalogues: the server allows at most 1000 per warehouse.\n", send("import,\"2000\",stock.csv"));
+    }
+
+    @Test
+    void importsOnlyFromTheDataDirectory() throws IOException {
+        Files.write(directory.resolve("outside.csv"), List.of("1,1,Apple,5,1.50"));
+        Files.write(directory.resolve("data").resolve("inside.csv"), List.of("1,1,Apple,5,1.50"));
+
+        assertEquals("Error: Cannot import [../outside.csv]: the file must be inside the data directory.\n",
+                send("import,\"5\",../outside.csv"));
+        assertEquals("Error: Cannot import [" + directory.resolve("outside.csv") + "]: the file must be inside the data directory.\n",
+                send("import,\"5\"," + directory.resolve("outside.csv")));
+        assertTrue(send("import,\"5\",inside.csv").startsWith("----- IMPORTED 1 PRODUCTS, REJECTED 0 ROWS IN "));
+        assertEquals("Product [Apple] is in shelf [1], slot [1], quantity [5], price [1.50].\n", send("find,Apple"));
+    }
+
+    @Test
+    void keepsTheConnectionAfterAFailedCommand() throws IOException {
+        assertEquals("Error: Stock is not initialized. Please set up the stock first.\n", send("find,Apple"));
+        assertEquals("Stock set up with 5 slots across 1 stocks.\n", send("setup,5"));
+    }
+}
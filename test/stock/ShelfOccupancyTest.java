@@ -0,0 +1,128 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import stock.StockEngine.SlotFilter;
+
+class ShelfOccupancyTest {
+    // 130 slots span three bitmap words, the last one partly
+    private final StockEngine stock = new StockEngine(new int[] {130, 2}, 100);
+
+    @Test
+    void countsFreeSlotsAsProductsComeAndGo() {
+        stock.insert(1, 1, "First", 1, 100);
+        stock.insert(1, 64, "End of first word", 1, 100);
+        stock.insert(1, 65, "Start of second word", 1, 100);
+        stock.insert(1, 130, "Last", 1, 100);
+
+        assertEquals(126, stock.freeSlotsOnShelf(0));
+        assertEquals(4, stock.matchingCount(0, SlotFilter.OCCUPIED));
+        assertEquals(126, stock.matchingCount(0, SlotFilter.EMPTY));
+        assertEquals(130, stock.matchingCount(0, SlotFilter.ALL));
+        assertEquals(4, stock.productCount());
+
+        stock.delete("end of first word");
+
+        assertEquals(127, stock.freeSlotsOnShelf(0));
+        assertEquals(3, stock.productCount());
+    }
+
+    @Test
+    void listsOnlyShelvesWithAFreeSlot() {
+        assertArrayEquals(new int[] {1, 2}, stock.listAvailable());
+
+        stock.insert(2, 1, "A", 1, 100);
+        stock.insert(2, 2, "B", 1, 100);
+
+        assertArrayEquals(new int[] {1}, stock.listAvailable());
+        assertFalse(stock.isFull());
+
+        stock.delete("a");
+
+        assertArrayEquals(new int[] {1, 2}, stock.listAvailable());
+    }
+
+    @Test
+    void collectsMatchingSlotsAcrossWordBoundaries() {
+        for (int slot : new int[] {2, 63, 64, 65, 129}) {
+            stock.insert(1, slot, "Slot " + slot, 1, 100);
+        }
+        int[] offsets = new int[8];
+        String[] names = new String[8];
+
+        int count = stock.collectSlots(0, 0, SlotFilter.OCCUPIED, 8, offsets, names);
+
+        assertEquals(5, count);
+        assertArrayEquals(new int[] {1, 62, 63, 64, 128}, Arrays.copyOf(offsets, count));
+        assertEquals("Slot 129", names[4]);
+
+        count = stock.collectSlots(0, 62, SlotFilter.EMPTY, 3, offsets, names);
+
+        assertEquals(3, count);
+        assertArrayEquals(new int[] {65, 66, 67}, Arrays.copyOf(offsets, count));
+        assertNull(names[0]);
+    }
+
+    @Test
+    void selectsTheNthMatchingSlotAndStopsAtTheShelfEnd() {
+        for (int slot : new int[] {3, 70, 130}) {
+            stock.insert(1, slot, "Slot " + slot, 1, 100);
+        }
+
+        assertEquals(2, stock.selectMatching(0, 0, SlotFilter.OCCUPIED));
+        assertEquals(69, stock.selectMatching(0, 1, SlotFilter.OCCUPIED));
+        assertEquals(129, stock.selectMatching(0, 2, SlotFilter.OCCUPIED));
+        assertEquals(-1, stock.selectMatching(0, 3, SlotFilter.OCCUPIED));
+        assertEquals(128, stock.selectMatching(0, 126, SlotFilter.EMPTY));
+        assertEquals(-1, stock.selectMatching(0, 127, SlotFilter.EMPTY));
+    }
+
+    @Test
+    void findsTheFirstFreeSlot() {
+        for (int slot = 1; slot <= 66; slot++) {
+            stock.insert(1, slot, "Slot " + slot, 1, 100);
+        }
+
+        assertEquals(67, stock.findFirstFreeSlot(0));
+
+        stock.delete("Slot 5");
+
+        assertEquals(5, stock.findFirstFreeSlot(0));
+    }
+
+    @Test
+    void pointsToTheFirstFreeSlotWhenTheChosenOneIsTaken() {
+        stock.insert(1, 1, "Apple", 1, 100);
+        stock.insert(1, 2, "Fig", 1, 100);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> stock.insert(1, 2, "Kiwi", 1, 100));
+        assertEquals("Slot [2] on shelf [1] is occupied by [Fig]. First free slot: [3].", e.getMessage());
+
+        stock.insert(2, 1, "A", 1, 100);
+        stock.insert(2, 2, "B", 1, 100);
+        e = assertThrows(IllegalArgumentException.class, () -> stock.checkSlotFree(2, 1));
+        assertEquals("Slot [1] on shelf [2] is occupied by [A]. Shelf is full.", e.getMessage());
+    }
+
+    @Test
+    void isFullOnlyWhenEverySlotIsTaken() {
+        StockEngine small = new StockEngine(new int[] {1, 1}, 10);
+        small.insert(1, 1, "A", 1, 100);
+        assertFalse(small.isFull());
+
+        small.insert(2, 1, "B", 1, 100);
+
+        assertTrue(small.isFull());
+        assertEquals(-1, small.findFirstFreeSlot(1));
+        assertArrayEquals(new int[0], small.listAvailable());
+    }
+}
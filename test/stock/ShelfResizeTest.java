@@ -0,0 +1,97 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShelfResizeTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void growingKeepsProductsInPlace() {
+        StockEngine stock = new StockEngine(new int[] {2, 3}, 10);
+        stock.insert(1, 1, "Apple", 5, 100);
+        stock.insert(1, 2, "Fig", 3, 200);
+        assertEquals(-1, stock.findFirstFreeSlot(0));
+
+        // Past one occupancy word, so the shelf's columns are reallocated
+        stock.resizeShelf(1, 130);
+
+        assertEquals(130, stock.slotsOnShelf(0));
+        assertEquals(128, stock.freeSlotsOnShelf(0));
+        assertEquals(133, stock.totalSlots());
+        assertEquals(3, stock.findFirstFreeSlot(0));
+        assertEquals(new StockItem("Fig", 1, 2, 3, 200), stock.find("Fig"));
+        stock.insert(1, 130, "Kiwi", 1, 100);
+        assertEquals("Kiwi", stock.occupant(1, 130));
+    }
+
+    @Test
+    void shrinkingIsRefusedWhileARemovedSlotIsOccupied() {
+        StockEngine stock = new StockEngine(new int[] {10}, 10);
+        stock.insert(1, 2, "Apple", 5, 100);
+        stock.insert(1, 7, "Fig", 3, 200);
+
+        IllegalArgumentException refused = assertThrows(IllegalArgumentException.class, () -> stock.resizeShelf(1, 6));
+        assertEquals("Cannot shrink shelf [1] to 6 slots: slot [7] is occupied by [Fig].", refused.getMessage());
+        assertEquals(10, stock.slotsOnShelf(0));
+
+        stock.resizeShelf(1, 7);
+        assertEquals(7, stock.slotsOnShelf(0));
+        assertEquals(5, stock.freeSlotsOnShelf(0));
+        assertEquals(7, stock.totalSlots());
+        assertThrows(IllegalArgumentException.class, () -> stock.insert(1, 8, "Kiwi", 1, 100));
+        assertThrows(IllegalArgumentException.class, () -> stock.resizeShelf(1, 0));
+    }
+
+    @Test
+    void addedShelvesStartEmpty() {
+        StockEngine stock = new StockEngine(new int[] {1}, 10);
+        stock.insert(1, 1, "Apple", 5, 100);
+        assertArrayEquals(new int[0], stock.listAvailable());
+
+        assertEquals(2, stock.addShelf(4));
+
+        assertEquals(2, stock.shelfCount());
+        assertEquals(4, stock.freeSlotsOnShelf(1));
+        assertArrayEquals(new int[] {2}, stock.listAvailable());
+        stock.insert(2, 4, "Fig", 3, 200);
+        assertEquals(new StockItem("Fig", 2, 4, 3, 200), stock.find("fig"));
+    }
+
+    @Test
+    void resizesAreReplayedFromTheLog() {
+        Path snapshotFile = directory.resolve("stock.snapshot");
+        Path logFile = directory.resolve("stock.wal");
+        StockEngine stock = new StockEngine(new int[] {4, 4}, 10);
+        try (WriteAheadLog log = WriteAheadLog.open(logFile, 0, stock.replayHandler())) {
+            stock.attachLog(log);
+            stock.insert(1, 1, "Apple", 5, 100);
+            stock.checkpoint(snapshotFile);
+            stock.resizeShelf(1, 100);
+            stock.insert(1, 100, "Fig", 3, 200);
+            stock.resizeShelf(2, 2);
+            stock.addShelf(6);
+            stock.insert(3, 6, "Kiwi", 1, 100);
+        }
+
+        StockSnapshot snapshot = StockSnapshot.readFrom(snapshotFile, 10);
+        StockEngine restored = StockEngine.restore(snapshot);
+        WriteAheadLog.open(logFile, snapshot.lastSequence(), restored.replayHandler()).close();
+
+        assertEquals(3, restored.shelfCount());
+        assertEquals(100, restored.slotsOnShelf(0));
+        assertEquals(2, restored.slotsOnShelf(1));
+        assertEquals(6, restored.slotsOnShelf(2));
+        assertEquals(108, restored.totalSlots());
+        assertEquals(new StockItem("Fig", 1, 100, 3, 200), restored.find("Fig"));
+        assertEquals(new StockItem("Kiwi", 3, 6, 1, 100), restored.find("Kiwi"));
+        assertEquals(98, restored.freeSlotsOnShelf(0));
+    }
+}
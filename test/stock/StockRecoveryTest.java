@@ -0,0 +1,149 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StockRecoveryTest {
+    private static final int HISTORY_RETENTION = 100;
+
+    @TempDir
+    Path directory;
+
+    private final List<WriteAheadLog> openLogs = new ArrayList<>();
+
+    @AfterEach
+    void closeLogs() {
+        openLogs.forEach(WriteAheadLog::close);
+    }
+
+    private Path snapshotFile() {
+        return directory.resolve("stock.snapshot");
+    }
+
+    private Path logFile() {
+        return directory.resolve("stock.wal");
+    }
+
+    private WriteAheadLog attachLog(StockEngine stock, long lastSequence) {
+        WriteAheadLog log = WriteAheadLog.open(logFile(), lastSequence, stock.replayHandler());
+        stock.attachLog(log);
+        openLogs.add(log);
+        return log;
+    }
+
+    private StockEngine newStock() {
+        StockEngine stock = new StockEngine(new int[] {4, 4}, HISTORY_RETENTION);
+        attachLog(stock, 0);
+        return stock;
+    }
+
+    // What the application does on start: load the snapshot, then replay the log records it does not cover
+    private StockEngine restore() {
+        StockSnapshot snapshot = StockSnapshot.readFrom(snapshotFile(), HISTORY_RETENTION);
+        StockEngine stock = StockEngine.restore(snapshot);
+        attachLog(stock, snapshot.lastSequence());
+        return stock;
+    }
+
+    private void closeLog(StockEngine stock) {
+        WriteAheadLog log = openLogs.remove(openLogs.size() - 1);
+        log.close();
+        stock.attachLog(null);
+    }
+
+    private static List<String> history(StockEngine stock) {
+        List<String> entries = new ArrayList<>();
+        stock.readHistory((time, name, operation) -> entries.add(operation.label() + " " + name));
+        return entries;
+    }
+
+    @Test
+    void replaysOnlyTheChangesMadeAfterTheSnapshot() {
+        StockEngine stock = newStock();
+        stock.insert(1, 1, "Apple", 5, 100);
+        stock.insert(1, 2, "Fig", 3, 200);
+        stock.checkpoint(snapshotFile());
+        stock.insert(2, 1, "Kiwi", 7, 300);
+        stock.update("Apple", "Green Apple", 6, 150);
+        stock.delete("Fig");
+        closeLog(stock);
+
+        StockEngine restored = restore();
+
+        assertEquals(2, restored.productCount());
+        assertEquals(new StockItem("Green Apple", 1, 1, 6, 150), restored.find("green apple"));
+        assertEquals(new StockItem("Kiwi", 2, 1, 7, 300), restored.find("Kiwi"));
+        assertNull(restored.find("Apple"));
+        assertNull(restored.find("Fig"));
+        assertEquals(6 + 7, restored.totalUnits());
+        assertEquals(List.of("Inserted Green Apple", "Inserted Fig", "Inserted Kiwi", "Updated Green Apple", "Deleted Fig"),
+                history(restored));
+    }
+
+    @Test
+    void recordsTheSnapshotAlreadyHoldsAreNotAppliedTwice() throws IOException {
+        StockEngine stock = newStock();
+        stock.insert(1, 1, "Apple", 5, 100);
+        stock.insert(2, 3, "Fig", 3, 200);
+        stock.update("Fig", "Fig", 4, 200);
+        WriteAheadLog log = openLogs.get(0);
+        log.commit();
+        // As if the process stopped after the snapshot was written but before the log was reset
+        Path staleLog = directory.resolve("stale.wal");
+        Files.copy(logFile(), staleLog);
+        stock.checkpoint(snapshotFile());
+        closeLog(stock);
+        Files.copy(staleLog, logFile(), StandardCopyOption.REPLACE_EXISTING);
+
+        StockEngine restored = restore();
+
+        assertEquals(2, restored.productCount());
+        assertEquals(new StockItem("Fig", 2, 3, 4, 200), restored.find("Fig"));
+        assertEquals(5 + 4, restored.totalUnits());
+        assertEquals(List.of("Inserted Apple", "Inserted Fig", "Updated Fig"), history(restored));
+
+        // New records continue after the snapshot's sequence, so they are replayed next time
+        restored.insert(1, 2, "Kiwi", 7, 300);
+        closeLog(restored);
+
+        StockEngine restoredAgain = restore();
+        assertEquals(3, restoredAgain.productCount());
+        assertEquals(new StockItem("Kiwi", 1, 2, 7, 300), restoredAgain.find("Kiwi"));
+    }
+
+    @Test
+    void restoresAfterASweepFreedAndReusedProductIds() {
+        StockEngine stock = newStock();
+        // Enough rounds for the history to drop the first ones, so the checkpoint's sweep frees their ids
+        for (int round = 0; round < HISTORY_RETENTION * 3 / 5; round++) {
+            stock.insert(1, 1, "Round " + round, 1, 100);
+            stock.delete("Round " + round);
+        }
+        stock.insert(1, 4, "Keeper", 2, 100);
+        stock.checkpoint(snapshotFile());
+        stock.insert(2, 2, "After", 3, 100);
+        stock.update("Keeper", "Renamed Keeper", 2, 100);
+        closeLog(stock);
+
+        StockEngine restored = restore();
+
+        assertEquals(2, restored.productCount());
+        assertEquals(new StockItem("Renamed Keeper", 1, 4, 2, 100), restored.find("Renamed Keeper"));
+        assertEquals(new StockItem("After", 2, 2, 3, 100), restored.find("after"));
+        assertEquals(List.of(restored.find("After"), restored.find("Renamed Keeper")), restored.findByPrefix("", 10));
+        List<String> history = history(restored);
+        assertEquals(List.of("Inserted Renamed Keeper", "Inserted After", "Updated Renamed Keeper"),
+                history.subList(history.size() - 3, history.size()));
+    }
+}
@@ -0,0 +1,83 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class StockSearchTest {
+    private final StockEngine stock = new StockEngine(new int[] {4, 4}, 100);
+
+    StockSearchTest() {
+        stock.insert(1, 1, "Apple", 5, 150);
+        stock.insert(1, 2, "apricot", 10, 300);
+        stock.insert(1, 3, "Banana", 10, 99);
+        stock.insert(2, 1, "Applesauce", 0, 150);
+        stock.insert(2, 2, "Cherry", 20, 1000);
+    }
+
+    private static List<String> names(List<StockItem> items) {
+        List<String> names = new ArrayList<>();
+        for (StockItem item : items) {
+            names.add(item.name());
+        }
+        return names;
+    }
+
+    @Test
+    void prefixIgnoresCaseAndKeepsNameOrder() {
+        assertEquals(List.of("Apple", "Applesauce", "apricot"), names(stock.findByPrefix("ap", 10)));
+        assertEquals(List.of("Apple", "Applesauce"), names(stock.findByPrefix("APPLE", 10)));
+        assertEquals(List.of("Apple", "Applesauce"), names(stock.findByPrefix("a", 2)));
+        assertEquals(List.of(), names(stock.findByPrefix("Applesauces", 10)));
+        assertEquals(5, stock.findByPrefix("", 10).size());
+    }
+
+    @Test
+    void rangesIncludeBothEnds() {
+        assertEquals(List.of("Apple", "apricot", "Banana"), names(stock.findByQuantity(5, 10, 10)));
+        assertEquals(List.of("Applesauce"), names(stock.findByQuantity(0, 0, 10)));
+        assertEquals(List.of(), names(stock.findByQuantity(11, 19, 10)));
+        assertEquals(List.of("Banana", "Apple", "Applesauce"), names(stock.findByPrice(99, 150, 10)));
+        assertEquals(List.of("Cherry"), names(stock.findByPrice(1000, Long.MAX_VALUE, 10)));
+    }
+
+    @Test
+    void rangesStopAtTheLimit() {
+        assertEquals(List.of("Applesauce", "Apple"), names(stock.findByQuantity(0, Integer.MAX_VALUE, 2)));
+        assertEquals(List.of("Banana"), names(stock.findByPrice(0, Long.MAX_VALUE, 1)));
+        assertEquals(List.of(), names(stock.findByPrice(0, Long.MAX_VALUE, 0)));
+    }
+
+    @Test
+    void searchesFollowUpdatesAndDeletes() {
+        // Build the indexes first, so the changes below have to keep them current
+        stock.findByPrefix("", 10);
+        stock.findByQuantity(0, 0, 10);
+
+        stock.update("Apple", "Pear", 11, 150);
+        stock.update("Banana", "Banana", 10, 151);
+        stock.delete("Applesauce");
+        stock.insert(2, 3, "Avocado", 0, 150);
+
+        assertEquals(List.of("apricot", "Avocado"), names(stock.findByPrefix("a", 10)));
+        assertEquals(List.of("Pear"), names(stock.findByPrefix("p", 10)));
+        assertEquals(List.of("Avocado"), names(stock.findByQuantity(0, 9, 10)));
+        assertEquals(List.of("apricot", "Banana", "Pear"), names(stock.findByQuantity(10, 11, 10)));
+        // Equal prices come in shelf and slot order
+        assertEquals(List.of("Pear", "Avocado"), names(stock.findByPrice(150, 150, 10)));
+        assertEquals(List.of("Banana"), names(stock.findByPrice(151, 151, 10)));
+    }
+
+    @Test
+    void searchesReturnWhereTheProductIsNow() {
+        stock.findByPrice(0, Long.MAX_VALUE, 10);
+
+        stock.update("Cherry", "Cherry", 3, 1000);
+
+        assertEquals(List.of(new StockItem("Cherry", 2, 2, 3, 1000)), stock.findByPrice(1000, 1000, 10));
+        assertEquals(List.of(new StockItem("Cherry", 2, 2, 3, 1000)), stock.findByPrefix("ch", 10));
+    }
+}
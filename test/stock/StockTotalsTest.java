@@ -0,0 +1,84 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class StockTotalsTest {
+    private final StockEngine stock = new StockEngine(new int[] {3, 3}, 100);
+    private final List<String> alerts = new ArrayList<>();
+
+    StockTotalsTest() {
+        stock.setLowStockThreshold(5);
+        stock.addLowStockListener((item, previousQuantity, threshold) ->
+                alerts.add(item.name() + " " + previousQuantity + "->" + item.quantity() + " below " + threshold));
+    }
+
+    @Test
+    void totalsFollowInsertsUpdatesAndDeletes() {
+        stock.insert(1, 1, "Apple", 10, 150);
+        stock.insert(1, 2, "Pear", 2, 300);
+        stock.insert(2, 1, "Plum", 7, 1000);
+
+        assertEquals(19, stock.totalUnits());
+        assertEquals(10 * 150 + 2 * 300 + 7 * 1000, stock.totalValue());
+        assertEquals(1, stock.lowStockCount());
+        assertEquals(12, stock.unitsOnShelf(0));
+        assertEquals(2100, stock.valueOnShelf(0));
+        assertEquals(1, stock.lowStockOnShelf(0));
+        assertEquals(0, stock.lowStockOnShelf(1));
+
+        stock.update("Apple", "Apple", 4, 200);
+        stock.delete("Pear");
+
+        assertEquals(11, stock.totalUnits());
+        assertEquals(4 * 200 + 7 * 1000, stock.totalValue());
+        assertEquals(1, stock.lowStockCount());
+        assertEquals(800, stock.valueOnShelf(0));
+        assertEquals(7000, stock.valueOnShelf(1));
+    }
+
+    @Test
+    void changingTheThresholdRecountsLowStock() {
+        stock.insert(1, 1, "Apple", 10, 150);
+        stock.insert(1, 2, "Pear", 2, 300);
+        stock.insert(2, 1, "Plum", 7, 1000);
+
+        stock.setLowStockThreshold(8);
+        assertEquals(2, stock.lowStockCount());
+        assertEquals(1, stock.lowStockOnShelf(1));
+
+        stock.setLowStockThreshold(0);
+        assertEquals(0, stock.lowStockCount());
+    }
+
+    @Test
+    void alertsFireOnlyWhenAnUpdateCrossesTheThreshold() {
+        stock.insert(1, 1, "Apple", 3, 150);
+        stock.insert(1, 2, "Pear", 9, 300);
+
+        stock.update("Apple", "Apple", 2, 150); // already low
+        stock.update("Pear", "Pear", 5, 300); // at the threshold is not low
+        stock.update("Pear", "Pear", 4, 300); // crosses
+        stock.update("Pear", "Pear", 1, 300); // still low
+        stock.update("Pear", "Pear", 6, 300);
+        stock.update("Pear", "Green Pear", 0, 300); // crosses again
+
+        assertEquals(List.of("Pear 5->4 below 5", "Green Pear 6->0 below 5"), alerts);
+    }
+
+    @Test
+    void refusesAProductWhoseValueCouldOverflowTheTotals() {
+        // Long.MAX_VALUE / Integer.MAX_VALUE is 4294967298
+        stock.insert(1, 1, "Gold", 2, 2_147_483_649L);
+
+        assertThrows(IllegalArgumentException.class, () -> stock.insert(1, 2, "Platinum", 3, 2_147_483_649L));
+        assertThrows(IllegalArgumentException.class, () -> stock.update("Gold", "Gold", Integer.MAX_VALUE, 3));
+        assertEquals(2 * 2_147_483_649L, stock.totalValue());
+        assertEquals(1, stock.productCount());
+    }
+}
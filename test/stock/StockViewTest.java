@@ -0,0 +1,123 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import stock.StockEngine.SlotFilter;
+
+class StockViewTest {
+    // Shelf 2 is empty and shelf 3 full, so pages start past whole shelves with no or every slot matching
+    private static final int[] LAYOUT = {5, 3, 2, 130, 1};
+
+    private final StockEngine stock = new StockEngine(LAYOUT, 100);
+
+    StockViewTest() {
+        stock.insert(1, 2, "A2", 1, 100);
+        stock.insert(1, 5, "A5", 1, 100);
+        stock.insert(3, 1, "C1", 1, 100);
+        stock.insert(3, 2, "C2", 1, 100);
+        for (int slot = 60; slot <= 130; slot += 7) {
+            stock.insert(4, slot, "D" + slot, 1, 100);
+        }
+    }
+
+    // Every matching slot in the shelf range, in order, rendered one by one
+    private List<String[]> matchingSlots(int fromShelf, int toShelf, SlotFilter filter) {
+        List<String[]> slots = new ArrayList<>();
+        for (int shelf = fromShelf; shelf <= toShelf; shelf++) {
+            for (int slot = 1; slot <= LAYOUT[shelf]; slot++) {
+                String name = stock.occupant(shelf + 1, slot);
+                boolean matches = filter == SlotFilter.ALL || (filter == SlotFilter.OCCUPIED) == (name != null);
+                if (matches) {
+                    slots.add(new String[] {String.valueOf(shelf + 1), "[ " + slot + " - " + (name != null ? name : "EMPTY") + " ] "});
+                }
+            }
+        }
+        return slots;
+    }
+
+    private String expectedPage(List<String[]> slots, int pageSize, long pageNumber) {
+        StringBuilder page = new StringBuilder();
+        String shelf = null;
+        int from = (int) ((pageNumber - 1) * pageSize);
+        for (int i = from; i < Math.min(slots.size(), from + pageSize); i++) {
+            if (!slots.get(i)[0].equals(shelf)) {
+                if (shelf != null) {
+                    page.append('\n');
+                }
+                shelf = slots.get(i)[0];
+                page.append("Stock [").append(shelf).append("] => ");
+            }
+            page.append(slots.get(i)[1]);
+        }
+        if (shelf != null) {
+            page.append('\n');
+        }
+        return page.toString();
+    }
+
+    @Test
+    void everyPageMatchesTheSlotsAtItsPosition() {
+        StringBuilder page = new StringBuilder();
+        for (SlotFilter filter : SlotFilter.values()) {
+            for (int fromShelf = 0; fromShelf < LAYOUT.length; fromShelf++) {
+                for (int toShelf = fromShelf; toShelf < LAYOUT.length; toShelf++) {
+                    List<String[]> slots = matchingSlots(fromShelf, toShelf, filter);
+                    for (int pageSize : new int[] {1, 2, 3, 7, 64, 1000}) {
+                        long pages = StockView.countPages(stock, fromShelf, toShelf, filter, pageSize);
+                        assertEquals((slots.size() + pageSize - 1) / pageSize, pages);
+                        for (long pageNumber = 1; pageNumber <= pages; pageNumber++) {
+                            StockView.renderPage(stock, page, fromShelf, toShelf, filter, pageSize, pageNumber);
+                            assertEquals(expectedPage(slots, pageSize, pageNumber), page.toString(),
+                                    filter + " shelves " + fromShelf + "-" + toShelf + ", size " + pageSize + ", page " + pageNumber);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void aPagePastTheEndIsEmpty() {
+        StringBuilder page = new StringBuilder("stale");
+
+        StockView.renderPage(stock, page, 1, 1, SlotFilter.OCCUPIED, 10, 1);
+
+        assertEquals("", page.toString());
+    }
+
+    @Test
+    void summaryCountsOccupiedSlotsPerShelf() {
+        StringBuilder summary = new StringBuilder();
+
+        StockView.renderSummary(stock, summary, 0, 2);
+
+        assertEquals("""
+                -------- Stock Summary --------
+                Stock [1]: 2/5 occupied
+                Stock [2]: 0/3 occupied
+                Stock [3]: 2/2 occupied
+                Total: 4/10 occupied
+                """, summary.toString());
+    }
+
+    @Test
+    void printsEveryShelfOnItsOwnLine() {
+        StringWriter text = new StringWriter();
+        StockEngine small = new StockEngine(new int[] {2, 1}, 10);
+        small.insert(1, 2, "Fig", 1, 100);
+
+        try (PrintWriter out = new PrintWriter(text)) {
+            StockView.printAll(small, out);
+        }
+
+        assertEquals("Stock [1] => [ 1 - EMPTY ] [ Fig ] " + System.lineSeparator() + "Stock [2] => [ 1 - EMPTY ] " + System.lineSeparator(),
+                text.toString());
+    }
+}
@@ -0,0 +1,116 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import stock.Warehouses.Located;
+import stock.Warehouses.Totals;
+
+class WarehousesTest {
+    private static final int WAREHOUSES = 200;
+
+    // Few workers and many warehouses, so every query is split into tasks holding several warehouses each
+    private final ForkJoinPool pool = new ForkJoinPool(3);
+    private final Warehouses warehouses = new Warehouses(pool);
+
+    @AfterEach
+    void shutDownPool() {
+        pool.shutdown();
+    }
+
+    private static String name(int warehouse) {
+        return String.format("W%03d", warehouse);
+    }
+
+    // Adds the warehouses in random order; every third one stocks Apple, with the warehouse number as quantity
+    private void addWarehouses() {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < WAREHOUSES; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(42));
+        for (int i : order) {
+            StockEngine stock = new StockEngine(new int[] {2, 2}, 10);
+            stock.setLowStockThreshold(5);
+            if (i % 3 == 0) {
+                stock.insert(1 + i % 2, 2, "Apple", i, 100);
+            }
+            stock.insert(2, 1, "Fig " + i, 1, 100);
+            warehouses.put(name(i), stock);
+        }
+    }
+
+    @Test
+    void locateMergesEveryMatchInWarehouseNameOrder() {
+        addWarehouses();
+
+        List<Located> found = warehouses.locate("APPLE");
+
+        List<Located> expected = new ArrayList<>();
+        for (int i = 0; i < WAREHOUSES; i += 3) {
+            expected.add(new Located(name(i), new StockItem("Apple", 1 + i % 2, 2, i, 100)));
+        }
+        assertEquals(expected, found);
+        assertEquals(List.of(new Located(name(7), new StockItem("Fig 7", 2, 1, 1, 100))), warehouses.locate("fig 7"));
+        assertEquals(List.of(), warehouses.locate("Kiwi"));
+    }
+
+    @Test
+    void totalsComeInWarehouseNameOrder() {
+        addWarehouses();
+
+        Map<String, Totals> totals = warehouses.totalsByWarehouse();
+
+        assertEquals(warehouses.names(), new ArrayList<>(totals.keySet()));
+        assertEquals(name(0), warehouses.names().get(0));
+        assertEquals(new Totals(2, 4, 1 + 3, 400, 2), totals.get(name(3)));
+        assertEquals(new Totals(1, 4, 1, 100, 1), totals.get(name(4)));
+        Totals sum = new Totals(0, 0, 0, 0, 0);
+        for (Totals one : totals.values()) {
+            sum = sum.plus(one);
+        }
+        assertEquals(WAREHOUSES + (WAREHOUSES + 2) / 3, sum.products());
+        assertEquals(WAREHOUSES * 4L, sum.slots());
+    }
+
+    @Test
+    void queriesOverNoWarehousesAreEmpty() {
+        assertEquals(List.of(), warehouses.locate("Apple"));
+        assertEquals(Map.of(), warehouses.totalsByWarehouse());
+    }
+
+    @Test
+    void namesIgnoreCaseAndKeepTheirFirstSpelling() {
+        StockEngine first = new StockEngine(new int[] {1}, 10);
+        StockEngine second = new StockEngine(new int[] {1}, 10);
+        warehouses.put("North", first);
+
+        assertSame(first, warehouses.get("NORTH"));
+        assertEquals("North", warehouses.nameOf("north"));
+        assertNull(warehouses.nameOf("Nort"));
+
+        warehouses.put("NORTH", second);
+        assertSame(second, warehouses.get("north"));
+        assertEquals(List.of("North"), warehouses.names());
+    }
+
+    @Test
+    void rejectsNamesThatCannotBeDirectories() {
+        for (String invalid : new String[] {"", "-north", "north/east", "..", "a".repeat(65)}) {
+            assertThrows(IllegalArgumentException.class, () -> Warehouses.checkName(invalid), invalid);
+        }
+        Warehouses.checkName("North_2-b");
+    }
+}
@@ -0,0 +1,177 @@
+package stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    // Records every replayed change as one line, so whole replays compare as lists
+    private static final class Recorder implements WriteAheadLog.Handler {
+        final List<String> replayed = new ArrayList<>();
+
+        @Override
+        public void insert(int shelfIndex, int offset, int productId, String name, int quantity, long price, long time) {
+            replayed.add("insert " + shelfIndex + " " + offset + " " + productId + " " + name + " " + quantity + " " + price + " " + time);
+        }
+
+        @Override
+        public void update(int shelfIndex, int offset, String name, int quantity, long price, long time) {
+            replayed.add("update " + shelfIndex + " " + offset + " " + name + " " + quantity + " " + price + " " + time);
+        }
+
+        @Override
+        public void delete(int shelfIndex, int offset, long time) {
+            replayed.add("delete " + shelfIndex + " " + offset + " " + time);
+        }
+
+        @Override
+        public void resize(int shelfIndex, int slots) {
+            replayed.add("resize " + shelfIndex + " " + slots);
+        }
+    }
+
+    private Path logFile() {
+        return directory.resolve("stock.wal");
+    }
+
+    private static List<String> replay(Path file, long lastSequence) {
+        Recorder recorder = new Recorder();
+        WriteAheadLog.open(file, lastSequence, recorder).close();
+        return recorder.replayed;
+    }
+
+    // Writes two records and returns the log size after them, then writes a third
+    private long writeThreeRecords() {
+        try (WriteAheadLog log = WriteAheadLog.open(logFile(), 0, new Recorder())) {
+            log.logInsert(0, 4, 7, "Green Apple", 10, 250, 1000);
+            log.logUpdate(0, 4, "Green Apple", 8, 300, 2000);
+            log.commit();
+            long twoRecords = log.size();
+            log.logDelete(0, 4, 3000);
+            return twoRecords;
+        }
+    }
+
+    private static final List<String> FIRST_TWO = List.of(
+            "insert 0 4 7 Green Apple 10 250 1000",
+            "update 0 4 Green Apple 8 300 2000");
+
+    @Test
+    void replaysEveryCommittedRecordInOrder() {
+        writeThreeRecords();
+
+        List<String> expected = new ArrayList<>(FIRST_TWO);
+        expected.add("delete 0 4 3000");
+        assertEquals(expected, replay(logFile(), 0));
+    }
+
+    @Test
+    void truncatedLastRecordIsDroppedAndCutOff() throws IOException {
+        long twoRecords = writeThreeRecords();
+        try (FileChannel channel = FileChannel.open(logFile(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertEquals(FIRST_TWO, replay(logFile(), 0));
+        assertEquals(twoRecords, Files.size(logFile()));
+    }
+
+    @Test
+    void tornHeaderIsDroppedAndCutOff() throws IOException {
+        long twoRecords = writeThreeRecords();
+        try (FileChannel channel = FileChannel.open(logFile(), StandardOpenOption.WRITE)) {
+            channel.truncate(twoRecords + 5);
+        }
+
+        assertEquals(FIRST_TWO, replay(logFile(), 0));
+        assertEquals(twoRecords, Files.size(logFile()));
+    }
+
+    @Test
+    void corruptedLastRecordIsDroppedAndCutOff() throws IOException {
+        long twoRecords = writeThreeRecords();
+        flipLastByte();
+
+        assertEquals(FIRST_TWO, replay(logFile(), 0));
+        assertEquals(twoRecords, Files.size(logFile()));
+    }
+
+    @Test
+    void replayStopsAtACorruptedRecordInTheMiddle() throws IOException {
+        writeThreeRecords();
+        byte[] bytes = Files.readAllBytes(logFile());
+        bytes[12] ^= 0x01; // inside the first record's sequence number
+        Files.write(logFile(), bytes);
+
+        assertEquals(List.of(), replay(logFile(), 0));
+        assertEquals(0, Files.size(logFile()));
+    }
+
+    @Test
+    void appendsAfterTheLastIntactRecordOnceACorruptTailIsCut() throws IOException {
+        writeThreeRecords();
+        flipLastByte();
+        try (WriteAheadLog log = WriteAheadLog.open(logFile(), 0, new Recorder())) {
+            assertEquals(2, log.lastSequence());
+            log.logResize(1, 64);
+        }
+
+        List<String> expected = new ArrayList<>(FIRST_TWO);
+        expected.add("resize 1 64");
+        assertEquals(expected, replay(logFile(), 0));
+        assertEquals(List.of("resize 1 64"), replay(logFile(), 2));
+    }
+
+    @Test
+    void skipsRecordsUpToTheSnapshotSequence() {
+        writeThreeRecords();
+
+        assertEquals(List.of("update 0 4 Green Apple 8 300 2000", "delete 0 4 3000"), replay(logFile(), 1));
+        assertEquals(List.of(), replay(logFile(), 3));
+    }
+
+    @Test
+    void keepsNumberingAfterAResetSoStaleRecordsAreSkipped() {
+        try (WriteAheadLog log = WriteAheadLog.open(logFile(), 0, new Recorder())) {
+            log.logInsert(1, 0, 0, "Fig", 1, 100, 1000);
+            log.logInsert(1, 1, 1, "Kiwi", 2, 200, 2000);
+            log.commit();
+            log.reset();
+            assertEquals(0, log.size());
+            log.logDelete(1, 0, 3000);
+            assertEquals(3, log.lastSequence());
+        }
+
+        assertEquals(List.of("delete 1 0 3000"), replay(logFile(), 2));
+    }
+
+    @Test
+    void continuesNumberingFromTheSnapshotWhenTheLogIsEmpty() {
+        try (WriteAheadLog log = WriteAheadLog.open(logFile(), 41, new Recorder())) {
+            assertEquals(41, log.lastSequence());
+            log.logDelete(0, 0, 1000);
+            assertEquals(42, log.lastSequence());
+        }
+
+        assertEquals(List.of(), replay(logFile(), 42));
+        assertEquals(List.of("delete 0 0 1000"), replay(logFile(), 41));
+    }
+
+    private void flipLastByte() throws IOException {
+        byte[] bytes = Files.readAllBytes(logFile());
+        bytes[bytes.length - 1] ^= 0x01;
+        Files.write(logFile(), bytes);
+    }
+}